@@ -0,0 +1,89 @@
+package io.github.toniidev.toniifarmworlds.link;
+
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares GameTaskCodec with the GameTask#toString format the tasks of a player used to be stored in,
+ * one string per task. The tasks are the ones of a player with the default limits: three single tasks
+ * and nine multiple tasks of three requests each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GameTaskCodecBenchmark {
+    private static final Material[] MATERIALS = {Material.WHEAT, Material.CARROT, Material.POTATO, Material.BEETROOT};
+    private static final String[] REQUESTS = {"Grano", "Carote", "Patate", "Barbabietole"};
+    private static final String[] CLIENTS = {"Contadino", "Mugnaio", "Cuoco", "Oste"};
+
+    private List<GameTask> tasks;
+    private String encoded;
+    private List<String> strings;
+
+    @Setup
+    public void setup() {
+        tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            tasks.add(task(i));
+        }
+        for (int i = 0; i < 9; i++) {
+            List<SingleTask> singleTasks = new ArrayList<>();
+            for (int j = 0; j < 3; j++) {
+                singleTasks.add(task(i + j));
+            }
+            tasks.add(new MultipleTask(singleTasks, CLIENTS[i % CLIENTS.length]));
+        }
+
+        encoded = encodeCodec();
+        strings = encodeStrings();
+    }
+
+    private static SingleTask task(int i) {
+        int index = i % MATERIALS.length;
+        return new SingleTask(MATERIALS[index], REQUESTS[index], 1 + i % 4, 40 * (1 + i % 4), CLIENTS[index]);
+    }
+
+    @Benchmark
+    public String encodeCodec() {
+        return GameTaskCodec.encode(tasks);
+    }
+
+    @Benchmark
+    public List<GameTask> decodeCodec() {
+        return GameTaskCodec.decode(encoded);
+    }
+
+    @Benchmark
+    public List<String> encodeStrings() {
+        List<String> result = new ArrayList<>(tasks.size());
+        for (GameTask task : tasks) {
+            result.add(task.toString());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<GameTask> decodeStrings() {
+        List<GameTask> result = new ArrayList<>(strings.size());
+        for (String string : strings) {
+            result.add(GameTask.fromString(string));
+        }
+        return result;
+    }
+}
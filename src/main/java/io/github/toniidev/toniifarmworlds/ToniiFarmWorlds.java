@@ -1,13 +1,20 @@
 package io.github.toniidev.toniifarmworlds;
 
 import io.github.toniidev.toniifarmworlds.classes.Farm;
+import io.github.toniidev.toniifarmworlds.classes.FarmWorldManager;
 import io.github.toniidev.toniifarmworlds.commands.CreateFarm;
 import io.github.toniidev.toniifarmworlds.commands.GeneralFarm;
-import io.github.toniidev.toniifarmworlds.database.DatabaseManager;
+import io.github.toniidev.toniifarmworlds.database.DatabaseConnection;
+import io.github.toniidev.toniifarmworlds.database.WriteBehindQueue;
 import io.github.toniidev.toniifarmworlds.factories.InputFactory;
 import io.github.toniidev.toniifarmworlds.factories.InventoryFactory;
+import io.github.toniidev.toniifarmworlds.factories.ItemTemplate;
+import io.github.toniidev.toniifarmworlds.gui.MenuCache;
 import io.github.toniidev.toniifarmworlds.link.ServerPlayer;
+import io.github.toniidev.toniifarmworlds.link.ServerPlayerRegistry;
+import io.github.toniidev.toniifarmworlds.link.TaskScheduler;
 import io.github.toniidev.toniifarmworlds.utils.InitializeUtils;
+import io.github.toniidev.toniifarmworlds.utils.WorldPool;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -21,14 +28,34 @@ public final class ToniiFarmWorlds extends JavaPlugin {
         // Plugin startup logic
 
         InitializeUtils.setMainInstance(this);
+        saveDefaultConfig();
 
-        // load farms
+        // start writing changes in the background
+        WriteBehindQueue.start(this);
+
+        // load the data of the players that are already online, everybody else is loaded when they log in
         Farm.load(this);
         ServerPlayer.load(this);
 
+        // build the items the menus show over and over
+        ItemTemplate.load();
+
         Bukkit.getPluginManager().registerEvents(new InventoryFactory(), this);
         Bukkit.getPluginManager().registerEvents(new InputFactory(this), this);
         Bukkit.getPluginManager().registerEvents(new Farm(), this);
+        Bukkit.getPluginManager().registerEvents(new FarmWorldManager(), this);
+        Bukkit.getPluginManager().registerEvents(new MenuCache(), this);
+        Bukkit.getPluginManager().registerEvents(new ServerPlayerRegistry(), this);
+        Bukkit.getPluginManager().registerEvents(new TaskScheduler(), this);
+
+        // unload farm worlds nobody is using
+        FarmWorldManager.start(this);
+
+        // generate the tasks of the online players
+        TaskScheduler.start(this);
+
+        // keep some template clones ready for new farms
+        WorldPool.start(this);
 
         new InitializeUtils(new CreateFarm(), "creafattoria").initialize();
         new InitializeUtils(new GeneralFarm(this), "fattoria").initialize();
@@ -36,8 +63,17 @@ public final class ToniiFarmWorlds extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        // remember when the online players stopped getting tasks
+        TaskScheduler.stop();
+
         for(Farm farm : Farm.getTerrains()){
             farm.save();
         }
+        for(ServerPlayer player : ServerPlayer.getPlayers()){
+            player.save();
+        }
+
+        // write everything that is still pending. Connections still used by a write that timed out are left open
+        if (WriteBehindQueue.stop()) DatabaseConnection.closeAll();
     }
 }
@@ -4,28 +4,35 @@ import io.github.toniidev.toniifarmworlds.classes.extended.HistoryAccess;
 import io.github.toniidev.toniifarmworlds.classes.extended.HistoryLeave;
 import io.github.toniidev.toniifarmworlds.database.DatabaseItem;
 import io.github.toniidev.toniifarmworlds.database.DatabaseManager;
+import io.github.toniidev.toniifarmworlds.database.WriteBehindQueue;
+import io.github.toniidev.toniifarmworlds.gui.MenuCache;
 import io.github.toniidev.toniifarmworlds.utils.InitializeUtils;
-import io.github.toniidev.toniifarmworlds.utils.WorldUtils;
+import io.github.toniidev.toniifarmworlds.utils.PlayerUtils;
+import io.github.toniidev.toniifarmworlds.utils.WorldPool;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.WorldCreator;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.Plugin;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.stream.Collectors;
 
 public class Farm extends DatabaseItem<Farm> implements Listener {
-    // A thread-safe list to hold all the farms (terrains)
-    private static final List<Farm> terrains = new ArrayList<>();
-
     // The UUID of the player who owns this farm
     private UUID owner;
 
@@ -38,20 +45,35 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
     // A list to keep track of actions performed on the farm
     private final List<HistoryAction> history = new ArrayList<>();
 
+    // The farms read while their owners or members were logging in, waiting for them to join.
+    // An empty list marks a player whose farms are being read, so that they are not unloaded meanwhile
+    private static final Map<UUID, Preloaded> preloaded = new ConcurrentHashMap<>();
+
+    // The farms read for a player who is logging in, and when they were read
+    private record Preloaded(List<Farm> farms, long time) {
+        private Preloaded(List<Farm> farms) {
+            this(farms, System.currentTimeMillis());
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - time > PlayerUtils.LOGIN_TIMEOUT_MILLIS;
+        }
+    }
+
     /**
      * Constructor for creating a new farm with a specific owner.
      * @param owner The owner of the farm (player).
      */
     public Farm(Player owner) {
-        super(InitializeUtils.mainInstance, "farms", Farm.getTerrains());
+        super(InitializeUtils.mainInstance, "farms");
         if (owner == null) {
             throw new IllegalArgumentException("Owner cannot be null");
         }
         this.owner = owner.getUniqueId();
         this.worldName = "farm_" + this.owner;
 
-        // Add the created farm to the list of terrains
-        Farm.terrains.add(this);
+        // Add the created farm to the registry of terrains
+        FarmRegistry.register(this);
         this.save();
     }
 
@@ -59,30 +81,162 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
      * Default constructor for registering the Listener.
      */
     public Farm() {
-        super(InitializeUtils.mainInstance, "farms", Farm.getTerrains());
+        super(InitializeUtils.mainInstance, "farms");
+    }
+
+    /**
+     * Constructor used to rebuild a farm that has been read from the database.
+     * It does not add the farm to the registry of terrains and does not save it.
+     * @param owner The UUID of the owner of the farm.
+     * @param worldName The name of the farm's world.
+     * @param whitelist The UUIDs of the players who are whitelisted to access the farm.
+     * @param history The actions performed on the farm.
+     */
+    public Farm(UUID owner, String worldName, List<UUID> whitelist, List<HistoryAction> history) {
+        super(InitializeUtils.mainInstance, "farms");
+        if (owner == null) {
+            throw new IllegalArgumentException("Owner cannot be null");
+        }
+        this.owner = owner;
+        this.worldName = worldName != null ? worldName : "farm_" + owner;
+        this.whitelist.addAll(whitelist);
+        this.history.addAll(history);
+    }
+
+    /**
+     * Gets the key of the row that stores this farm: the UUID of its owner.
+     * @return The owner's UUID as a string.
+     */
+    @Override
+    public String getDatabaseKey() {
+        return this.owner.toString();
+    }
+
+    /**
+     * Gets the secondary keys of the row that stores this farm: the UUIDs of the whitelisted players,
+     * so that the farms a player is whitelisted in can be read without reading every farm.
+     * @return The whitelisted players' UUIDs as strings.
+     */
+    @Override
+    public Collection<String> getIndexKeys() {
+        List<String> keys = new ArrayList<>(whitelist.size());
+        for (UUID member : whitelist) {
+            keys.add(member.toString());
+        }
+        return keys;
     }
 
     /**
-     * Retrieves the list of all farms (terrains).
-     * @return The list of terrains.
+     * Retrieves all the farms (terrains) that are loaded: the ones whose owner or members are online.
+     * @return The registered terrains.
      */
-    public static List<Farm> getTerrains() {
-        return Farm.terrains;
+    public static Collection<Farm> getTerrains() {
+        return FarmRegistry.getFarms();
     }
 
     /**
-     * Loads farm data from the database.
+     * Loads from the database the farms of the players that are already online, as it happens after a reload.
+     * The farms of every other player are loaded when they log in.
      * @param plugin The plugin instance.
      */
     public static void load(Plugin plugin) {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            registerLoaded(load(plugin, player.getUniqueId()));
+        }
+    }
+
+    /**
+     * Reads from the database the farm owned by a player and the farms the player is whitelisted in.
+     * It does not register the farms, and it can be called off the server thread.
+     * @param plugin The plugin instance.
+     * @param player The UUID of the player.
+     * @return The farms read from the database.
+     */
+    public static List<Farm> load(Plugin plugin, UUID player) {
+        File file = new File(plugin.getDataFolder(), "farms.db");
         try {
-            List<Farm> loadedFarms = DatabaseManager.load(new File(plugin.getDataFolder(), "farms.db"), Farm.class);
-            Farm.getTerrains().addAll(loadedFarms);
-        } catch (SQLException | InstantiationException | IllegalAccessException | IOException e) {
-            throw new RuntimeException("Failed to load farms from database", e);
+            List<Farm> farms = new ArrayList<>(DatabaseManager.loadByIndex(file, Farm.class, player.toString()));
+            Farm ownedFarm = DatabaseManager.load(file, Farm.class, player.toString());
+            if (ownedFarm != null) farms.add(ownedFarm);
+            return farms;
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Failed to load the farms of " + player + " from database", e);
+        }
+    }
+
+    /**
+     * Registers the farms that have been read from the database, skipping the ones that are already loaded:
+     * the loaded copy is the up to date one.
+     * @param farms The farms read from the database.
+     */
+    private static void registerLoaded(List<Farm> farms) {
+        for (Farm farm : farms) {
+            if (FarmRegistry.getByOwner(farm.getOwner()).isPresent()) continue;
+            FarmRegistry.register(farm);
         }
     }
 
+    /**
+     * Unregisters the farm owned by a player and the farms the player is whitelisted in, if none of their
+     * owners and members is online, or about to join, and nobody is in their worlds.
+     * It must only be called once the changes to the farms have been written.
+     * @param player The UUID of the player who left.
+     */
+    private static void unloadFarmsOf(UUID player) {
+        for (Farm farm : getFarmsOf(player)) {
+            if (farm.isInUse()) continue;
+            FarmRegistry.unregister(farm);
+        }
+    }
+
+    /**
+     * Unloads the farms of a player that nobody is using, once the changes made to them so far have been written.
+     * It must be called on the server thread.
+     * @param player The UUID of the player.
+     */
+    private static void unloadFarmsOfWhenWritten(UUID player) {
+        WriteBehindQueue.afterWrite(getFarmsOf(player), () -> unloadFarmsOf(player));
+    }
+
+    /**
+     * @param player The UUID of the player.
+     * @return The loaded farm owned by the player and the loaded farms the player is whitelisted in.
+     */
+    private static List<Farm> getFarmsOf(UUID player) {
+        List<Farm> farms = new ArrayList<>(FarmRegistry.getByMember(player));
+        FarmRegistry.getByOwner(player).ifPresent(farms::add);
+        return farms;
+    }
+
+    /**
+     * Checks if the farm must stay loaded, since its owner or a member is online or logging in,
+     * or someone is in its world.
+     * @return True if the farm is in use, otherwise false.
+     */
+    private boolean isInUse() {
+        if (isUsedBy(owner)) return true;
+        for (UUID member : whitelist) {
+            if (isUsedBy(member)) return true;
+        }
+        return FarmWorldManager.isOccupied(worldName);
+    }
+
+    private static boolean isUsedBy(UUID player) {
+        if (Bukkit.getPlayer(player) != null) return true;
+        Preloaded entry = preloaded.get(player);
+        return entry != null && !entry.isExpired();
+    }
+
+    /**
+     * Forgets the farms read for a player who is not going to join, and unloads the ones nobody else
+     * is using, once their changes have been written. It must be called on the server thread.
+     * @param player The UUID of the player.
+     */
+    private static void forgetPreloaded(UUID player) {
+        if (preloaded.remove(player) == null) return;
+        unloadFarmsOfWhenWritten(player);
+    }
+
     /**
      * Gets the owner of the farm as a Player object.
      * @return The owner (player) of the farm.
@@ -107,16 +261,24 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
         if (owner == null) {
             throw new IllegalArgumentException("Owner cannot be null");
         }
+        UUID previousOwner = this.owner;
         this.owner = owner;
+        FarmRegistry.changeOwner(this, previousOwner);
         this.save();
+
+        // The owner is the key of the row, so the row stored under the previous owner is now stale
+        if (previousOwner != null && !previousOwner.equals(owner)) {
+            this.delete(previousOwner.toString());
+        }
     }
 
     /**
      * Gets the list of UUIDs of players who are whitelisted to access the farm.
+     * It can't be edited: use whitelistPlayer and removeFromWhitelist, which keep the registry updated.
      * @return The list of whitelisted player UUIDs.
      */
     public List<UUID> getWhitelist() {
-        return whitelist;
+        return Collections.unmodifiableList(whitelist);
     }
 
     /**
@@ -135,7 +297,9 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
         if (worldName == null || worldName.isEmpty()) {
             throw new IllegalArgumentException("World name cannot be null or empty");
         }
+        String previousWorldName = this.worldName;
         this.worldName = worldName;
+        FarmRegistry.changeWorldName(this, previousWorldName);
         this.save();
     }
 
@@ -148,12 +312,30 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
     }
 
     /**
-     * Gets the world associated with the farm.
-     * If the world doesn't exist, it creates a new world with the farm's world name.
+     * Gets the world associated with the farm, only if it is already loaded.
+     * It never loads or generates the world, so it is safe to use during lookups and events.
+     * @return The loaded world of the farm, or null if it isn't loaded.
+     */
+    @Nullable
+    public World getLoadedWorld() {
+        return Bukkit.getWorld(worldName);
+    }
+
+    /**
+     * Checks if the world associated with the farm is loaded.
+     * @return True if the world is loaded, otherwise false.
+     */
+    public boolean isWorldLoaded() {
+        return getLoadedWorld() != null;
+    }
+
+    /**
+     * Loads the world associated with the farm, if it isn't loaded yet.
+     * Loading a world is expensive: it must only be called when a player is actually going to the farm.
      * @return The world associated with the farm.
      */
-    public World getWorld() {
-        return Optional.ofNullable(Bukkit.getWorld(worldName))
+    public World loadWorld() {
+        return Optional.ofNullable(getLoadedWorld())
                 .orElseGet(() -> Bukkit.createWorld(new WorldCreator(worldName)));
     }
 
@@ -166,20 +348,27 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
     }
 
     /**
-     * Creates a new world for the farm by cloning a template world.
+     * Creates the folder of the farm's world by cloning the template world set in the config.
+     * A ready clone is taken from the WorldPool when there is one.
+     * The world is not loaded: it must be loaded on the server thread once the returned future completes.
+     * @return A future that completes when the farm world is ready to be loaded.
+     */
+    public CompletableFuture<Void> cloneWorld() {
+        return cloneWorld(WorldPool.getTemplateWorldName());
+    }
+
+    /**
+     * Creates the folder of the farm's world by cloning a template world. A ready clone is taken
+     * from the WorldPool when there is one, otherwise the template is copied off the server thread.
+     * The world is not loaded: it must be loaded on the server thread once the returned future completes.
      * @param templateWorldName The name of the world to clone.
-     * @return The created farm world.
+     * @return A future that completes when the farm world is ready to be loaded.
      */
-    public World createWorld(String templateWorldName) {
+    public CompletableFuture<Void> cloneWorld(String templateWorldName) {
         if (templateWorldName == null || templateWorldName.isEmpty()) {
             throw new IllegalArgumentException("Template world name cannot be null or empty");
         }
-        try {
-            WorldUtils.cloneWorld(templateWorldName, worldName);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to clone world", e);
-        }
-        return Bukkit.createWorld(new WorldCreator(worldName));
+        return WorldPool.take(templateWorldName, worldName);
     }
 
     /**
@@ -203,9 +392,7 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
         if (owner == null) {
             throw new IllegalArgumentException("Owner cannot be null");
         }
-        return Farm.getTerrains().stream()
-                .filter(farm -> farm.getOwnerAsPlayer().equals(owner))
-                .findFirst();
+        return FarmRegistry.getByOwner(owner.getUniqueId());
     }
 
     /**
@@ -221,7 +408,20 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
     }
 
     /**
-     * Finds the farm associated with the given world.
+     * Checks if the world with the given name is a farm.
+     * @param worldName The name of the world to check.
+     * @return True if the world is a farm, otherwise false.
+     */
+    public static boolean isFarm(String worldName) {
+        if (worldName == null) {
+            throw new IllegalArgumentException("World name cannot be null");
+        }
+        return FarmRegistry.getByWorldName(worldName).isPresent();
+    }
+
+    /**
+     * Finds the farm associated with the given world, matching it by name.
+     * It never loads any farm world.
      * @param world The world to check.
      * @return An Optional containing the farm, or empty if not found.
      */
@@ -229,9 +429,7 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
         if (world == null) {
             throw new IllegalArgumentException("World cannot be null");
         }
-        return Farm.getTerrains().stream()
-                .filter(farm -> farm.getWorld().equals(world))
-                .findFirst();
+        return FarmRegistry.getByWorldName(world.getName());
     }
 
     /**
@@ -243,9 +441,7 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
         if (player == null) {
             throw new IllegalArgumentException("Player cannot be null");
         }
-        return Farm.getTerrains().stream()
-                .filter(farm -> farm.getWhitelist().contains(player.getUniqueId()))
-                .collect(Collectors.toList());
+        return new ArrayList<>(FarmRegistry.getByMember(player.getUniqueId()));
     }
 
     /**
@@ -259,7 +455,11 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
         }
         if (!this.whitelist.contains(player.getUniqueId())) {
             this.whitelist.add(player.getUniqueId());
+            if (FarmRegistry.isRegistered(this)) FarmRegistry.addMember(this, player.getUniqueId());
             this.save();
+
+            MenuCache.refresh(this.owner, MenuCache.MenuType.WHITELIST);
+            MenuCache.refresh(player.getUniqueId(), MenuCache.MenuType.HOME);
         }
         return this;
     }
@@ -274,7 +474,11 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
             throw new IllegalArgumentException("Player cannot be null");
         }
         if (this.whitelist.remove(player)) {
+            FarmRegistry.removeMember(this, player);
             this.save();
+
+            MenuCache.refresh(this.owner, MenuCache.MenuType.WHITELIST);
+            MenuCache.refresh(player, MenuCache.MenuType.HOME);
         }
         return this;
     }
@@ -298,6 +502,7 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
         }
         history.add(new HistoryAccess(player.getDisplayName()));
         this.save();
+        refreshHistoryMenu();
     }
 
     /**
@@ -310,6 +515,78 @@ public class Farm extends DatabaseItem<Farm> implements Listener {
         }
         history.add(new HistoryLeave(player.getDisplayName()));
         this.save();
+        refreshHistoryMenu();
+    }
+
+    /**
+     * Updates the owner's farm management menu after an action has been added to the history.
+     * The menu only shows whether the history is empty, so it changes just with the first action.
+     */
+    private void refreshHistoryMenu() {
+        if (history.size() == 1) MenuCache.refresh(this.owner, MenuCache.MenuType.FARM_MANAGEMENT);
+    }
+
+    /**
+     * Event handler for when a player is logging in.
+     * It reads the farms of the player off the server thread.
+     * @param e The event triggered by a player logging in.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent e) {
+        if (e.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+
+        // Players whose login timed out are never going to join
+        for (Map.Entry<UUID, Preloaded> entry : preloaded.entrySet()) {
+            if (!entry.getValue().isExpired() || !preloaded.remove(entry.getKey(), entry.getValue())) continue;
+            UUID expired = entry.getKey();
+            Bukkit.getScheduler().runTask(InitializeUtils.mainInstance, () -> unloadFarmsOfWhenWritten(expired));
+        }
+
+        // Mark the player first: farms that are unloaded from now on have already been written
+        preloaded.put(e.getUniqueId(), new Preloaded(List.of()));
+        try {
+            preloaded.put(e.getUniqueId(), new Preloaded(load(InitializeUtils.mainInstance, e.getUniqueId())));
+        } catch (RuntimeException ex) {
+            // The farms are read again when the player joins
+            preloaded.remove(e.getUniqueId());
+            throw ex;
+        }
+    }
+
+    /**
+     * Event handler for when the login of a player has been checked.
+     * If the player has been kicked, for example because they are banned or the server is full, they are
+     * not going to join, so the farms read for them are forgotten.
+     * @param e The event triggered by a player logging in.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent e) {
+        if (e.getResult() == PlayerLoginEvent.Result.ALLOWED) return;
+        forgetPreloaded(e.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Event handler for when a player joins.
+     * It registers the farms that have been read while the player was logging in, or reads them now if
+     * they haven't been, or if they have been read too long ago.
+     * @param e The event triggered by a player joining.
+     */
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent e) {
+        Preloaded entry = preloaded.remove(e.getPlayer().getUniqueId());
+        registerLoaded(entry != null && !entry.isExpired()
+                ? entry.farms()
+                : load(InitializeUtils.mainInstance, e.getPlayer().getUniqueId()));
+    }
+
+    /**
+     * Event handler for when a player quits.
+     * It unloads the farms nobody is using anymore, once their changes have been written.
+     * @param e The event triggered by a player quitting.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        unloadFarmsOfWhenWritten(e.getPlayer().getUniqueId());
     }
 
     /**
@@ -0,0 +1,127 @@
+package io.github.toniidev.toniifarmworlds.classes;
+
+import io.github.toniidev.toniifarmworlds.gui.MenuCache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of all the farms. It keeps a hash index for every way a farm gets looked up
+ * (by owner, by world name and by whitelisted member), so that every lookup takes constant
+ * time, whatever the number of farms is. Farm keeps the indexes updated whenever its
+ * owner, its world name or its whitelist change.
+ */
+public class FarmRegistry {
+    private static final Map<UUID, Farm> byOwner = new ConcurrentHashMap<>();
+    private static final Map<String, Farm> byWorldName = new ConcurrentHashMap<>();
+    private static final Map<UUID, Set<Farm>> byMember = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a farm to every index
+     *
+     * @param farm The farm to register
+     */
+    public static void register(Farm farm) {
+        byOwner.put(farm.getOwner(), farm);
+        byWorldName.put(farm.getWorldName(), farm);
+        for (UUID member : farm.getWhitelist()) {
+            addMember(farm, member);
+        }
+
+        refreshMenus(farm);
+    }
+
+    /**
+     * Removes a farm from every index
+     *
+     * @param farm The farm to unregister
+     */
+    public static void unregister(Farm farm) {
+        byOwner.remove(farm.getOwner(), farm);
+        byWorldName.remove(farm.getWorldName(), farm);
+        for (UUID member : farm.getWhitelist()) {
+            removeMember(farm, member);
+        }
+
+        refreshMenus(farm);
+    }
+
+    /**
+     * Tells whether the specified farm is in the registry or not
+     *
+     * @param farm The farm to check
+     * @return true if the farm has been registered
+     */
+    public static boolean isRegistered(Farm farm) {
+        return byOwner.get(farm.getOwner()) == farm;
+    }
+
+    /**
+     * @return Every registered farm
+     */
+    public static Collection<Farm> getFarms() {
+        return Collections.unmodifiableCollection(byOwner.values());
+    }
+
+    /**
+     * @param owner The UUID of the owner
+     * @return An Optional containing the farm owned by the specified player, or empty if there isn't one
+     */
+    public static Optional<Farm> getByOwner(UUID owner) {
+        return Optional.ofNullable(byOwner.get(owner));
+    }
+
+    /**
+     * @param worldName The name of the world
+     * @return An Optional containing the farm whose world has the specified name, or empty if there isn't one
+     */
+    public static Optional<Farm> getByWorldName(String worldName) {
+        return Optional.ofNullable(byWorldName.get(worldName));
+    }
+
+    /**
+     * @param member The UUID of the player
+     * @return The farms the specified player is whitelisted in
+     */
+    public static Set<Farm> getByMember(UUID member) {
+        Set<Farm> farms = byMember.get(member);
+        return farms == null ? Collections.emptySet() : Collections.unmodifiableSet(farms);
+    }
+
+    static void addMember(Farm farm, UUID member) {
+        byMember.computeIfAbsent(member, x -> ConcurrentHashMap.newKeySet()).add(farm);
+    }
+
+    static void removeMember(Farm farm, UUID member) {
+        byMember.computeIfPresent(member, (x, farms) -> {
+            farms.remove(farm);
+            return farms.isEmpty() ? null : farms;
+        });
+    }
+
+    static void changeOwner(Farm farm, UUID previousOwner) {
+        if (previousOwner == null || !byOwner.remove(previousOwner, farm)) return;
+        byOwner.put(farm.getOwner(), farm);
+
+        MenuCache.refresh(previousOwner);
+        MenuCache.refresh(farm.getOwner());
+    }
+
+    static void changeWorldName(Farm farm, String previousWorldName) {
+        if (previousWorldName == null || !byWorldName.remove(previousWorldName, farm)) return;
+        byWorldName.put(farm.getWorldName(), farm);
+    }
+
+    // Update the cached menus that show whether the owner has a farm, and which farms the members can access
+    private static void refreshMenus(Farm farm) {
+        MenuCache.refresh(farm.getOwner(), MenuCache.MenuType.HOME);
+        for (UUID member : farm.getWhitelist()) {
+            MenuCache.refresh(member, MenuCache.MenuType.HOME);
+        }
+    }
+}
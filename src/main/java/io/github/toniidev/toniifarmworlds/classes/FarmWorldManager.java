@@ -0,0 +1,178 @@
+package io.github.toniidev.toniifarmworlds.classes;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.*;
+
+/**
+ * Manages the lifecycle of the farm worlds. Farm worlds are loaded only when a player goes
+ * to the farm, are saved and unloaded after they have been empty for a while, and only a
+ * limited amount of them can be loaded at the same time: when the limit is reached, the
+ * least recently used empty farm worlds are unloaded first.
+ */
+public class FarmWorldManager implements Listener {
+    /// The players that are currently in each farm world, by world name
+    private static final Map<String, Set<UUID>> presence = new HashMap<>();
+
+    /// The loaded farm worlds, from the least to the most recently used, with the time they were last used at
+    private static final LinkedHashMap<String, Long> loaded = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static long idleMillis;
+    private static int maxLoaded;
+
+    /**
+     * Reads the "farm-worlds" section of the config, starts tracking the farm worlds that are
+     * already loaded and starts checking for idle farm worlds
+     *
+     * @param main The main plugin instance
+     */
+    public static void start(Plugin main) {
+        idleMillis = main.getConfig().getLong("farm-worlds.idle-unload-seconds", 300L) * 1000L;
+        maxLoaded = Math.max(1, main.getConfig().getInt("farm-worlds.max-loaded", 20));
+        long checkInterval = Math.max(1L, main.getConfig().getLong("farm-worlds.check-interval-ticks", 200L));
+
+        for (World world : Bukkit.getWorlds()) {
+            if (!Farm.isFarm(world.getName())) continue;
+            touch(world.getName());
+            world.getPlayers().forEach(player -> enter(world.getName(), player.getUniqueId()));
+        }
+
+        Bukkit.getScheduler().runTaskTimer(main, FarmWorldManager::unloadIdleWorlds, checkInterval, checkInterval);
+    }
+
+    /**
+     * Loads the world of the specified farm, if it isn't loaded yet, and marks it as used.
+     * It should be called right before teleporting a player to the farm.
+     *
+     * @param farm The farm whose world has to be loaded
+     * @return The loaded world of the farm
+     */
+    public static World load(Farm farm) {
+        World world = farm.loadWorld();
+        touch(world.getName());
+        evictLeastRecentlyUsed(world.getName());
+        return world;
+    }
+
+    /**
+     * @return The amount of farm worlds that are currently loaded
+     */
+    public static int getLoadedCount() {
+        return loaded.size();
+    }
+
+    /**
+     * Tells whether there is any player in the specified farm world
+     *
+     * @param worldName The name of the farm world
+     * @return true if at least one player is in the world
+     */
+    public static boolean isOccupied(String worldName) {
+        Set<UUID> players = presence.get(worldName);
+        return players != null && !players.isEmpty();
+    }
+
+    private static void touch(String worldName) {
+        loaded.put(worldName, System.currentTimeMillis());
+    }
+
+    private static void enter(String worldName, UUID player) {
+        if (!Farm.isFarm(worldName)) return;
+        presence.computeIfAbsent(worldName, x -> new HashSet<>()).add(player);
+        touch(worldName);
+    }
+
+    private static void leave(String worldName, UUID player) {
+        Set<UUID> players = presence.get(worldName);
+        if (players == null) return;
+
+        players.remove(player);
+        if (players.isEmpty()) presence.remove(worldName);
+
+        // The idle time of the world starts when the last player leaves it
+        if (loaded.containsKey(worldName)) touch(worldName);
+    }
+
+    /**
+     * Unloads every farm world that has been empty for longer than the idle time
+     */
+    private static void unloadIdleWorlds() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Long> entry : new ArrayList<>(loaded.entrySet())) {
+            if (now - entry.getValue() < idleMillis) continue;
+            unload(entry.getKey());
+        }
+    }
+
+    /**
+     * Unloads the least recently used empty farm worlds until the limit of loaded farm worlds is respected
+     *
+     * @param keep The name of the world that must not be unloaded, since it is the one being used
+     */
+    private static void evictLeastRecentlyUsed(String keep) {
+        Iterator<String> candidates = new ArrayList<>(loaded.keySet()).iterator();
+        while (loaded.size() > maxLoaded && candidates.hasNext()) {
+            String worldName = candidates.next();
+            if (worldName.equals(keep)) continue;
+            unload(worldName);
+        }
+    }
+
+    /**
+     * Saves and unloads the specified farm world, if no player is in it
+     *
+     * @param worldName The name of the farm world
+     * @return true if the world is not loaded anymore
+     */
+    private static boolean unload(String worldName) {
+        if (isOccupied(worldName)) return false;
+
+        World world = Bukkit.getWorld(worldName);
+        if (world == null) {
+            loaded.remove(worldName);
+            return true;
+        }
+        if (!world.getPlayers().isEmpty()) return false;
+
+        if (!Bukkit.unloadWorld(world, true)) return false;
+        loaded.remove(worldName);
+        return true;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent e) {
+        if (Farm.isFarm(e.getWorld().getName())) touch(e.getWorld().getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent e) {
+        loaded.remove(e.getWorld().getName());
+        presence.remove(e.getWorld().getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldSwitch(PlayerChangedWorldEvent e) {
+        leave(e.getFrom().getName(), e.getPlayer().getUniqueId());
+        enter(e.getPlayer().getWorld().getName(), e.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent e) {
+        enter(e.getPlayer().getWorld().getName(), e.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        leave(e.getPlayer().getWorld().getName(), e.getPlayer().getUniqueId());
+    }
+}
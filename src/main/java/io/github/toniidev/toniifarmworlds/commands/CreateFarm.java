@@ -1,7 +1,10 @@
 package io.github.toniidev.toniifarmworlds.commands;
 
 import io.github.toniidev.toniifarmworlds.classes.Farm;
+import io.github.toniidev.toniifarmworlds.classes.FarmRegistry;
+import io.github.toniidev.toniifarmworlds.classes.FarmWorldManager;
 import io.github.toniidev.toniifarmworlds.utils.CommandUtils;
+import io.github.toniidev.toniifarmworlds.utils.InitializeUtils;
 import io.github.toniidev.toniifarmworlds.utils.StringUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
@@ -11,9 +14,13 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
 
 public class CreateFarm implements CommandExecutor {
-    private final String TEMPLATE_WORLD = "template";
+    /// Players whose farm world is still being cloned
+    private static final Set<UUID> creating = new HashSet<>();
 
     @Override
     public boolean onCommand(CommandSender commandSender, Command command, String s, String[] strings) {
@@ -22,12 +29,20 @@ public class CreateFarm implements CommandExecutor {
         Player player = (Player) commandSender;
         String worldName = "farm_" + player.getUniqueId();
 
+        // Check if the farm of the Player is still being created
+        if(creating.contains(player.getUniqueId())){
+            player.sendMessage(StringUtils.formatColorCodes('&', "&e[Mondo] &aFattoria:&7 Sto ancora creando la tua " +
+                    "fattoria. Attendi..."));
+            return true;
+        }
+
         // Check if Player already has a terrain
         if(Farm.doesPlayerOwnATerrain(player)){
             player.sendMessage(StringUtils.formatColorCodes('&', "&e[Mondo] &aFattoria:&7 Hai già una " +
                     "fattoria! Ti teletrasporto..."));
 
-            player.teleport(Farm.reverse(player).get().getWorld().getSpawnLocation());
+            player.teleport(FarmWorldManager.load(Farm.reverse(player).get()).getSpawnLocation());
+            return true;
         }
 
         // Check if world has been generated but not loaded
@@ -35,25 +50,40 @@ public class CreateFarm implements CommandExecutor {
         if(worldFolder.exists()){
             player.sendMessage(StringUtils.formatColorCodes('&', "&e[Mondo] &aFattoria:&7 Caricamento del tuo " +
                     "mondo..."));
-            World world = new Farm(player).createWorld();
+            World world = FarmWorldManager.load(new Farm(player));
             player.teleport(world.getSpawnLocation());
             return true;
         }
 
-        // Clone template world
+        // Clone template world off the server thread, then load it and teleport the player on the server thread
         player.sendMessage(StringUtils.formatColorCodes('&', "&e[Mondo] &aFattoria:&7 Sto creando la tua " +
                 "fattoria. Attendi..."));
-        try{
-            World world = new Farm(player).createWorld(TEMPLATE_WORLD);
+        Farm farm = new Farm(player);
+        creating.add(player.getUniqueId());
+        farm.cloneWorld().whenComplete((ignored, ex) -> Bukkit.getScheduler().runTask(InitializeUtils.mainInstance, () -> {
+            creating.remove(player.getUniqueId());
+
+            if (ex != null) {
+                // Forget the farm, so that the player can try again
+                FarmRegistry.unregister(farm);
+                farm.delete();
+
+                if (player.isOnline()) {
+                    player.sendMessage(StringUtils.formatColorCodes('&', "&e[Mondo] &aFattoria:&7 Errore durante la creazione della tua fattoria. " +
+                            "Contatta un admin."));
+                }
+                Bukkit.getLogger().info(player.getDisplayName() + " tried to create a farm but there was an error. Stack trace:");
+                ex.printStackTrace();
+                return;
+            }
+
+            World world = FarmWorldManager.load(farm);
             world.setSpawnLocation(-4, -60, -6);
+            if (!player.isOnline()) return;
+
             player.teleport(world.getSpawnLocation());
             player.sendMessage(StringUtils.formatColorCodes('&', "&e[Mondo] &aFattoria:&7 Fattoria creata! Buon divertimento."));
-        } catch (Exception ex){
-            player.sendMessage(StringUtils.formatColorCodes('&', "&e[Mondo] &aFattoria:&7 Errore durante la creazione della tua fattoria. " +
-                    "Contatta un admin."));
-            Bukkit.getLogger().info(player.getDisplayName() + " tried to create a farm but there was an error. Stack trace:");
-            ex.printStackTrace();
-        }
+        }));
 
         return true;
     }
@@ -0,0 +1,170 @@
+package io.github.toniidev.toniifarmworlds.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Long-lived SQLite connection to a database file. There is only one instance per file:
+ * it keeps the connection open in WAL journal mode, remembers which tables have already
+ * been created and caches the prepared statements, so that they are compiled only once.
+ * Every method that uses the connection must synchronize on this instance.
+ */
+public class DatabaseConnection {
+    /// The open connections, by absolute path of their database file
+    private static final Map<String, DatabaseConnection> connections = new ConcurrentHashMap<>();
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final Set<String> tables = new HashSet<>();
+
+    private DatabaseConnection(File dbFile) throws SQLException {
+        this.connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+        }
+    }
+
+    /**
+     * Gets the connection to the specified database file, opening it (and creating the file) if needed
+     *
+     * @param dbFile The database file
+     * @return The connection to the database file
+     */
+    public static DatabaseConnection of(File dbFile) throws SQLException, IOException {
+        String path = dbFile.getAbsolutePath();
+        DatabaseConnection existing = connections.get(path);
+        if (existing != null) return existing;
+
+        synchronized (connections) {
+            existing = connections.get(path);
+            if (existing != null) return existing;
+
+            if (!dbFile.exists()) {
+                dbFile.getParentFile().mkdirs();
+                dbFile.createNewFile();
+            }
+
+            DatabaseConnection created = new DatabaseConnection(dbFile);
+            connections.put(path, created);
+            return created;
+        }
+    }
+
+    /**
+     * Closes every open connection. It should only be called once nothing is being written anymore
+     */
+    public static void closeAll() {
+        synchronized (connections) {
+            for (DatabaseConnection connection : connections.values()) {
+                connection.close();
+            }
+            connections.clear();
+        }
+    }
+
+    /**
+     * Default getter for this class
+     *
+     * @return The JDBC connection behind this instance
+     */
+    public Connection get() {
+        return connection;
+    }
+
+    /**
+     * Gets the prepared statement for the specified SQL, preparing it the first time it is asked for
+     *
+     * @param sql The SQL of the statement
+     * @return The cached prepared statement
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Tells whether the table with the specified name has already been created through this connection
+     *
+     * @param tableName The name of the table
+     * @return true if the table is known to exist
+     */
+    public synchronized boolean isTableCreated(String tableName) {
+        return tables.contains(tableName);
+    }
+
+    /**
+     * Remembers that the table with the specified name exists
+     *
+     * @param tableName The name of the table
+     */
+    public synchronized void setTableCreated(String tableName) {
+        tables.add(tableName);
+    }
+
+    /**
+     * Forgets the cached statements and tables, for example after a table has been renamed
+     */
+    public synchronized void reset() {
+        closeStatements();
+        tables.clear();
+    }
+
+    /**
+     * Runs the specified work inside a single transaction, committing it at the end or rolling it back
+     * if the work fails
+     *
+     * @param work The work to run
+     */
+    public synchronized void transaction(Work work) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            work.run(this);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private synchronized void close() {
+        closeStatements();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void closeStatements() {
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+        statements.clear();
+    }
+
+    /**
+     * Work that runs inside a transaction
+     */
+    @FunctionalInterface
+    public interface Work {
+        void run(DatabaseConnection connection) throws SQLException;
+    }
+}
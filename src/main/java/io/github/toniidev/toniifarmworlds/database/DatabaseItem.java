@@ -1,43 +1,70 @@
 package io.github.toniidev.toniifarmworlds.database;
 
-import io.github.toniidev.toniifarmworlds.database.DatabaseManager;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
-import java.io.IOException;
-import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 
-public class DatabaseItem<T> {
+public abstract class DatabaseItem<T> {
     private final File file;
-    private final List<T> list;
 
-    public DatabaseItem(Plugin main, String fileName, List<T> listLinkedToItem) {
+    public DatabaseItem(Plugin main, String fileName) {
         if (main == null) {
             throw new IllegalArgumentException("Main plugin instance cannot be null");
         }
         this.file = new File(main.getDataFolder(), fileName + ".db");
-        this.list = listLinkedToItem;
     }
 
-    public DatabaseItem(File customFile, List<T> listLinkedToItem) {
+    public DatabaseItem(File customFile) {
         this.file = customFile;
-        this.list = listLinkedToItem;
     }
 
+    /**
+     * Gets the primary key of the row that stores this item. Two items sharing the
+     * same key in the same file are considered the same entity.
+     *
+     * @return The key of this item inside its database file
+     */
+    public abstract String getDatabaseKey();
+
+    /**
+     * Gets the secondary keys under which the row that stores this item can be looked up too,
+     * through DatabaseManager#loadByIndex. They are written to the index table of the item's table
+     * every time its row is written.
+     *
+     * @return The secondary keys of this item, none by default
+     */
+    public Collection<String> getIndexKeys() {
+        return List.of();
+    }
+
+    /**
+     * Marks this item as changed. Its row, and only its row, gets written to its database
+     * file by the WriteBehindQueue, together with the other changes of the same flush interval.
+     */
     public void save() {
-        try {
-            DatabaseManager.save(this.list, file);
-        } catch (SQLException | IOException | IllegalAccessException e) {
-            throw new RuntimeException("Failed to save the database item", e);
-        }
+        WriteBehindQueue.save(this);
     }
 
-    public File getFile() {
-        return file;
+    /**
+     * Removes the row that stores this item from its database file.
+     */
+    public void delete() {
+        delete(this.getDatabaseKey());
+    }
+
+    /**
+     * Removes the row stored under the specified key from the database file of this item.
+     * It is used when the key of an item changes, to get rid of the row stored under the old key.
+     *
+     * @param key The key of the row to remove
+     */
+    protected void delete(String key) {
+        WriteBehindQueue.delete(this.getClass(), key, file);
     }
 
-    public List<T> getList() {
-        return list;
+    public File getFile() {
+        return file;
     }
-}
\ No newline at end of file
+}
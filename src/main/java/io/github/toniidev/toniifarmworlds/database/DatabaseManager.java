@@ -16,6 +16,8 @@ import io.github.toniidev.toniifarmworlds.link.ServerPlayer;
 import io.github.toniidev.toniifarmworlds.link.ServerPlayerTypeAdapter;
 import org.bukkit.Bukkit;
 
+import javax.annotation.Nullable;
+
 public class DatabaseManager {
     private static final Gson gson = new GsonBuilder()
             .registerTypeAdapter(Farm.class, new FarmTypeAdapter())
@@ -23,71 +25,270 @@ public class DatabaseManager {
             .registerTypeAdapter(ServerPlayer.class, new ServerPlayerTypeAdapter())
             .create();
 
-    // Save list of objects to a database file
-    public static <T> void save(List<T> list, File dbFile) throws SQLException, IOException, IllegalAccessException {
-        if(dbFile.exists()) dbFile.delete();
+    /**
+     * A write of a single row, together with its secondary keys. A null data means the row must be deleted.
+     */
+    public record Write(Class<?> type, String key, String data, Collection<String> indexKeys) {
+    }
 
-        if (!dbFile.exists()) {
-            dbFile.getParentFile().mkdirs();
-            dbFile.createNewFile();
-        }
-        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
-        try (Connection conn = DriverManager.getConnection(url)) {
-            if (conn != null) {
-                for (T item : list) {
-                    saveItem(conn, item);
+    // Serialize an item to the JSON stored in its row
+    public static String serialize(DatabaseItem<?> item) {
+        return gson.toJson(item);
+    }
+
+    // Apply a list of already serialized writes to a database file, as a single batched transaction
+    public static void write(List<Write> writes, File dbFile) throws SQLException, IOException {
+        DatabaseConnection db = DatabaseConnection.of(dbFile);
+        db.transaction(conn -> {
+            Set<PreparedStatement> batches = new LinkedHashSet<>();
+            for (Write write : writes) {
+                createTableIfNotExists(conn, write.type());
+                PreparedStatement pstmt;
+                if (write.data() == null) {
+                    pstmt = conn.prepare(deleteSQL(write.type()));
+                    pstmt.setString(1, write.key());
+                } else {
+                    pstmt = conn.prepare(upsertSQL(write.type()));
+                    pstmt.setString(1, write.key());
+                    pstmt.setString(2, write.data());
                 }
+                pstmt.addBatch();
+                batches.add(pstmt);
+
+                // The secondary keys of the row are replaced as a whole
+                PreparedStatement clearIndex = conn.prepare(deleteIndexSQL(write.type()));
+                clearIndex.setString(1, write.key());
+                clearIndex.addBatch();
+                batches.add(clearIndex);
+
+                if (write.data() == null || write.indexKeys().isEmpty()) continue;
+                PreparedStatement insertIndex = conn.prepare(insertIndexSQL(write.type()));
+                for (String indexKey : write.indexKeys()) {
+                    insertIndex.setString(1, indexKey);
+                    insertIndex.setString(2, write.key());
+                    insertIndex.addBatch();
+                }
+                batches.add(insertIndex);
             }
+
+            try {
+                for (PreparedStatement pstmt : batches) {
+                    pstmt.executeBatch();
+                }
+            } catch (SQLException e) {
+                // Statements are cached, so a failed batch must not be left behind for the next transaction
+                for (PreparedStatement pstmt : batches) {
+                    pstmt.clearBatch();
+                }
+                throw e;
+            }
+        });
+    }
+
+    // Upsert the row of a single item into a database file
+    public static void save(DatabaseItem<?> item, File dbFile) throws SQLException, IOException {
+        save(List.of(item), dbFile);
+    }
+
+    // Upsert the rows of every item of a collection into a database file, as a single batched transaction
+    public static void save(Collection<? extends DatabaseItem<?>> items, File dbFile) throws SQLException, IOException {
+        List<Write> writes = new ArrayList<>(items.size());
+        for (DatabaseItem<?> item : items) {
+            writes.add(new Write(item.getClass(), item.getDatabaseKey(), serialize(item), List.copyOf(item.getIndexKeys())));
         }
+        write(writes, dbFile);
+    }
 
-        Bukkit.getLogger().info("Saved something in the database file " + dbFile.getName());
+    // Delete the row stored under the given key from a database file
+    public static void delete(Class<?> clazz, String key, File dbFile) throws SQLException, IOException {
+        write(List.of(new Write(clazz, key, null, List.of())), dbFile);
     }
 
     // Load list of objects from a database file
-    public static <T> List<T> load(File dbFile, Class<T> clazz) throws SQLException, InstantiationException, IllegalAccessException, IOException {
-        if (!dbFile.exists()) {
-            dbFile.getParentFile().mkdirs();
-            dbFile.createNewFile();
-        }
+    public static <T extends DatabaseItem<?>> List<T> load(File dbFile, Class<T> clazz) throws SQLException, IOException {
+        DatabaseConnection db = DatabaseConnection.of(dbFile);
 
         List<T> list = new ArrayList<>();
-        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
-        try (Connection conn = DriverManager.getConnection(url)) {
-            if (conn != null) {
-                createTableIfNotExists(conn, clazz);
-                String tableName = clazz.getSimpleName();
-                String query = "SELECT * FROM " + tableName;
-                try (Statement stmt = conn.createStatement();
-                     ResultSet rs = stmt.executeQuery(query)) {
-                    while (rs.next()) {
-                        T item = gson.fromJson(rs.getString("data"), clazz);
-                        list.add(item);
-                    }
+        synchronized (db) {
+            prepareTable(db, clazz);
+            String query = "SELECT data FROM " + clazz.getSimpleName();
+            try (Statement stmt = db.get().createStatement();
+                 ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    T item = gson.fromJson(rs.getString("data"), clazz);
+                    list.add(item);
                 }
             }
         }
         return list;
     }
 
-    // Save a single item to the database
-    private static <T> void saveItem(Connection conn, T item) throws SQLException, IllegalAccessException {
-        String tableName = item.getClass().getSimpleName();
-        createTableIfNotExists(conn, item.getClass());
+    // Load the single object stored under the given key from a database file, or null if there is no such row
+    @Nullable
+    public static <T extends DatabaseItem<?>> T load(File dbFile, Class<T> clazz, String key) throws SQLException, IOException {
+        DatabaseConnection db = DatabaseConnection.of(dbFile);
 
-        String insertSQL = "INSERT INTO " + tableName + " (data) VALUES (?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(insertSQL)) {
-            pstmt.setString(1, gson.toJson(item));
-            pstmt.executeUpdate();
+        synchronized (db) {
+            prepareTable(db, clazz);
+            PreparedStatement pstmt = db.prepare("SELECT data FROM " + clazz.getSimpleName() + " WHERE id = ?");
+            pstmt.setString(1, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? gson.fromJson(rs.getString("data"), clazz) : null;
+            }
         }
     }
 
-    // Create table if it doesn't exist
-    private static <T> void createTableIfNotExists(Connection conn, Class<T> clazz) throws SQLException {
+    // Load the objects whose secondary keys include the given one from a database file
+    public static <T extends DatabaseItem<?>> List<T> loadByIndex(File dbFile, Class<T> clazz, String indexKey) throws SQLException, IOException {
+        DatabaseConnection db = DatabaseConnection.of(dbFile);
+
+        List<T> list = new ArrayList<>();
+        synchronized (db) {
+            prepareTable(db, clazz);
+            String tableName = clazz.getSimpleName();
+            PreparedStatement pstmt = db.prepare("SELECT t.data FROM " + tableName + " t JOIN " + indexTableName(clazz) +
+                    " i ON i.id = t.id WHERE i.key = ?");
+            pstmt.setString(1, indexKey);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    list.add(gson.fromJson(rs.getString("data"), clazz));
+                }
+            }
+        }
+        return list;
+    }
+
+    // Make sure the table of a class and its index table exist with the current schema before reading them
+    private static <T extends DatabaseItem<?>> void prepareTable(DatabaseConnection db, Class<T> clazz) throws SQLException {
+        migrateLegacyTable(db, clazz);
+        createTableIfNotExists(db, clazz);
+    }
+
+    // SQL that inserts a row, or replaces its data if a row with the same key already exists
+    private static String upsertSQL(Class<?> clazz) {
+        return "INSERT INTO " + clazz.getSimpleName() + " (id, data) VALUES (?, ?) " +
+                "ON CONFLICT(id) DO UPDATE SET data = excluded.data";
+    }
+
+    // SQL that deletes the row stored under a key
+    private static String deleteSQL(Class<?> clazz) {
+        return "DELETE FROM " + clazz.getSimpleName() + " WHERE id = ?";
+    }
+
+    // SQL that deletes the secondary keys of a row
+    private static String deleteIndexSQL(Class<?> clazz) {
+        return "DELETE FROM " + indexTableName(clazz) + " WHERE id = ?";
+    }
+
+    // SQL that adds a secondary key to a row
+    private static String insertIndexSQL(Class<?> clazz) {
+        return "INSERT OR IGNORE INTO " + indexTableName(clazz) + " (key, id) VALUES (?, ?)";
+    }
+
+    // The name of the table that stores the secondary keys of the rows of a class
+    private static String indexTableName(Class<?> clazz) {
+        return clazz.getSimpleName() + "_index";
+    }
+
+    // Create table and its index table if they don't exist. It runs only once per table and connection
+    private static <T> void createTableIfNotExists(DatabaseConnection db, Class<T> clazz) throws SQLException {
         String tableName = clazz.getSimpleName();
-        String createTableSQL = "CREATE TABLE IF NOT EXISTS " + tableName + " (data TEXT)";
-        try (Statement stmt = conn.createStatement()) {
+        if (db.isTableCreated(tableName)) return;
+
+        String createTableSQL = "CREATE TABLE IF NOT EXISTS " + tableName + " (id TEXT PRIMARY KEY, data TEXT NOT NULL)";
+        try (Statement stmt = db.get().createStatement()) {
             stmt.execute(createTableSQL);
         }
+
+        String indexTableName = indexTableName(clazz);
+        if (!tableExists(db.get(), indexTableName)) {
+            try (Statement stmt = db.get().createStatement()) {
+                stmt.execute("CREATE TABLE " + indexTableName + " (key TEXT NOT NULL, id TEXT NOT NULL, PRIMARY KEY (key, id))");
+                stmt.execute("CREATE INDEX " + indexTableName + "_id ON " + indexTableName + " (id)");
+            }
+            buildIndex(db, clazz);
+        }
+        db.setTableCreated(tableName);
+    }
+
+    // Fill a new index table with the secondary keys of the rows that were written before it existed
+    private static <T> void buildIndex(DatabaseConnection db, Class<T> clazz) throws SQLException {
+        if (!DatabaseItem.class.isAssignableFrom(clazz)) return;
+
+        PreparedStatement pstmt = db.prepare(insertIndexSQL(clazz));
+        try (Statement stmt = db.get().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, data FROM " + clazz.getSimpleName())) {
+            while (rs.next()) {
+                DatabaseItem<?> item = (DatabaseItem<?>) gson.fromJson(rs.getString("data"), clazz);
+                for (String indexKey : item.getIndexKeys()) {
+                    pstmt.setString(1, indexKey);
+                    pstmt.setString(2, rs.getString("id"));
+                    pstmt.addBatch();
+                }
+            }
+        }
+        pstmt.executeBatch();
+    }
+
+    // Move the rows of a table created with the old unkeyed (data TEXT) schema into the keyed one
+    private static <T extends DatabaseItem<?>> void migrateLegacyTable(DatabaseConnection db, Class<T> clazz) throws SQLException {
+        String tableName = clazz.getSimpleName();
+        if (db.isTableCreated(tableName)) return;
+        if (!tableExists(db.get(), tableName) || hasColumn(db.get(), tableName, "id")) return;
+
+        String legacyTableName = tableName + "_legacy";
+        db.transaction(conn -> {
+            try (Statement stmt = conn.get().createStatement()) {
+                stmt.execute("ALTER TABLE " + tableName + " RENAME TO " + legacyTableName);
+                conn.reset();
+                createTableIfNotExists(conn, clazz);
+
+                PreparedStatement pstmt = conn.prepare(upsertSQL(clazz));
+                PreparedStatement indexPstmt = conn.prepare(insertIndexSQL(clazz));
+                try (ResultSet rs = stmt.executeQuery("SELECT data FROM " + legacyTableName)) {
+                    while (rs.next()) {
+                        T item = gson.fromJson(rs.getString("data"), clazz);
+                        pstmt.setString(1, item.getDatabaseKey());
+                        pstmt.setString(2, serialize(item));
+                        pstmt.addBatch();
+
+                        for (String indexKey : item.getIndexKeys()) {
+                            indexPstmt.setString(1, indexKey);
+                            indexPstmt.setString(2, item.getDatabaseKey());
+                            indexPstmt.addBatch();
+                        }
+                    }
+                }
+                pstmt.executeBatch();
+                indexPstmt.executeBatch();
+
+                stmt.execute("DROP TABLE " + legacyTableName);
+            }
+        });
+
+        Bukkit.getLogger().info("Migrated table " + tableName + " to the keyed schema");
+    }
+
+    // Check if a table exists
+    private static boolean tableExists(Connection conn, String tableName) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT name FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            pstmt.setString(1, tableName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // Check if a table has a column with the given name
+    private static boolean hasColumn(Connection conn, String tableName, String columnName) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + tableName + ")")) {
+            while (rs.next()) {
+                if (rs.getString("name").equalsIgnoreCase(columnName)) return true;
+            }
+        }
+        return false;
     }
 
     // Get SQL type from Java type
@@ -0,0 +1,362 @@
+package io.github.toniidev.toniifarmworlds.database;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind persistence queue. Saving a DatabaseItem only marks it as dirty: every
+ * flush interval the dirty items are serialized on the server thread and written to their
+ * database files, in batches, by a dedicated thread. Saves of the same row inside the same
+ * interval are merged into a single write, and no disk I/O happens during the tick.
+ * A batch that fails to be written is queued again, and its database file is retried with an
+ * increasing delay for as long as it keeps failing.
+ */
+public class WriteBehindQueue {
+    /// The longest delay between two attempts to write to a database file that keeps failing
+    private static final long MAX_RETRY_DELAY_MILLIS = 5 * 60 * 1000L;
+    /// How many times a task waiting for some rows is postponed, while they fail to be written, before giving up
+    private static final int MAX_AFTER_WRITE_TRIES = 10;
+
+    /// The pending operations of the current interval, by row. A null item means the row must be deleted.
+    /// An operation in here is always newer than the ones of the batches handed to the persistence thread
+    private static final Map<Row, DatabaseItem<?>> pending = new LinkedHashMap<>();
+    /// The batches handed to the persistence thread that haven't been written yet, oldest first
+    private static final Queue<Batch> unwritten = new ConcurrentLinkedQueue<>();
+    /// The database files that failed to be written, and when they can be tried again
+    private static final Map<File, Backoff> backoffs = new ConcurrentHashMap<>();
+
+    private static Plugin plugin;
+    private static ExecutorService executor;
+    private static BukkitTask flushTask;
+    private static long flushInterval;
+
+    /**
+     * Starts the queue. Intervals and timeouts are read from the "persistence" section of the config.
+     *
+     * @param main The main plugin instance
+     */
+    public static void start(Plugin main) {
+        plugin = main;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tonii-farmworlds-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        flushInterval = Math.max(1L, main.getConfig().getLong("persistence.flush-interval-ticks", 40L));
+        flushTask = Bukkit.getScheduler().runTaskTimer(main, WriteBehindQueue::flush, flushInterval, flushInterval);
+    }
+
+    /**
+     * Tells whether the queue is accepting operations or not
+     *
+     * @return true if the queue has been started and not stopped yet
+     */
+    public static boolean isRunning() {
+        return executor != null && !executor.isShutdown();
+    }
+
+    /**
+     * Marks the specified item as dirty, so that it gets written in the next flush.
+     * If the queue isn't running, the item is written immediately.
+     *
+     * @param item The item that has changed
+     */
+    public static void save(DatabaseItem<?> item) {
+        if (!isRunning()) {
+            try {
+                DatabaseManager.save(item, item.getFile());
+            } catch (SQLException | IOException e) {
+                throw new RuntimeException("Failed to save the database item", e);
+            }
+            return;
+        }
+
+        synchronized (pending) {
+            Row row = Row.of(item);
+            pending.remove(row); // Keep the operations in the order of their last change
+            pending.put(row, item);
+        }
+    }
+
+    /**
+     * Schedules the deletion of the row stored under the specified key.
+     * If the queue isn't running, the row is deleted immediately.
+     *
+     * @param type The class of the items stored in the table
+     * @param key  The key of the row to delete
+     * @param file The database file the row is stored in
+     */
+    public static void delete(Class<?> type, String key, File file) {
+        if (!isRunning()) {
+            try {
+                DatabaseManager.delete(type, key, file);
+            } catch (SQLException | IOException e) {
+                throw new RuntimeException("Failed to delete the database item", e);
+            }
+            return;
+        }
+
+        synchronized (pending) {
+            Row row = new Row(file, type, key);
+            pending.remove(row);
+            pending.put(row, null);
+        }
+    }
+
+    /**
+     * Serializes the dirty items and hands them to the persistence thread, one batch per database file.
+     * The rows of a database file that has failed to be written are kept back until it can be tried again.
+     * It must be called on the server thread, since items are only ever changed there.
+     */
+    public static void flush() {
+        Map<Row, DatabaseItem<?>> operations = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        synchronized (pending) {
+            Iterator<Map.Entry<Row, DatabaseItem<?>>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Row, DatabaseItem<?>> entry = iterator.next();
+                Backoff backoff = backoffs.get(entry.getKey().file());
+                if (backoff != null && backoff.retryAt() > now) continue;
+
+                operations.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
+        if (operations.isEmpty()) return;
+
+        Map<File, Batch> batches = new LinkedHashMap<>();
+        for (Map.Entry<Row, DatabaseItem<?>> entry : operations.entrySet()) {
+            Row row = entry.getKey();
+            DatabaseItem<?> item = entry.getValue();
+            String data = item == null ? null : DatabaseManager.serialize(item);
+            Collection<String> indexKeys = item == null ? List.of() : List.copyOf(item.getIndexKeys());
+            Batch batch = batches.computeIfAbsent(row.file(), file -> new Batch(file, new ArrayList<>(), new LinkedHashMap<>()));
+            batch.writes().add(new DatabaseManager.Write(row.type(), row.key(), data, indexKeys));
+            batch.operations().put(row, item);
+        }
+
+        for (Batch batch : batches.values()) {
+            unwritten.add(batch);
+            executor.execute(WriteBehindQueue::writeNext);
+        }
+    }
+
+    // Write the oldest batch that hasn't been written yet. There is a call for every batch, on a single thread.
+    // The batch leaves the queue only once it is done, so that stop() knows about it while it is being written
+    private static void writeNext() {
+        Batch batch = unwritten.peek();
+        if (batch == null) return;
+
+        write(batch);
+        unwritten.remove();
+    }
+
+    // Write a batch to its database file. If it fails, its operations are queued again to be retried later
+    private static void write(Batch batch) {
+        File file = batch.file();
+        try {
+            DatabaseManager.write(batch.writes(), file);
+            Backoff recovered = backoffs.remove(file);
+            if (recovered != null) {
+                plugin.getLogger().info("The database file " + file.getName() + " has been written again after " +
+                        recovered.failures() + " failed attempts");
+            }
+        } catch (SQLException | IOException e) {
+            // Delay the file before queueing its rows again, or the next flush would take them right away
+            Backoff backoff = backoffs.compute(file, (key, previous) -> Backoff.after(previous));
+            requeue(batch);
+
+            long seconds = (backoff.retryAt() - System.currentTimeMillis() + 999) / 1000;
+            if (backoff.failures() == 1) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to write " + batch.writes().size() +
+                        " rows to the database file " + file.getName() + ", they will be retried in " + seconds + "s", e);
+            } else {
+                plugin.getLogger().warning("Failed again to write to the database file " + file.getName() +
+                        " (attempt " + backoff.failures() + "), retrying in " + seconds + "s: " + e.getMessage());
+            }
+        }
+    }
+
+    // Queue again the operations of a failed batch, except the ones whose row has changed again meanwhile
+    private static void requeue(Batch failed) {
+        synchronized (pending) {
+            for (Map.Entry<Row, DatabaseItem<?>> operation : failed.operations().entrySet()) {
+                Row row = operation.getKey();
+                if (pending.containsKey(row) || isWrittenLater(failed, row)) continue;
+                pending.put(row, operation.getValue());
+            }
+        }
+    }
+
+    // Tell whether a later batch, still waiting for the persistence thread, writes the specified row
+    private static boolean isWrittenLater(Batch failed, Row row) {
+        for (Batch batch : unwritten) {
+            if (batch != failed && batch.operations().containsKey(row)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Runs the specified task on the server thread once the rows of the specified items have been written.
+     * It is used to drop items from memory only when reading them back from their database file is safe.
+     * If those rows fail to be written, the task is postponed with an increasing delay, and it is given up
+     * after some tries: the items stay in memory, and their rows keep being retried. Failures of other
+     * rows don't postpone the task. If the queue isn't running, operations are already written, so the
+     * task runs immediately.
+     *
+     * @param items The items whose rows must be written before the task runs
+     * @param task  The task to run
+     */
+    public static void afterWrite(Collection<? extends DatabaseItem<?>> items, Runnable task) {
+        List<Row> rows = new ArrayList<>(items.size());
+        for (DatabaseItem<?> item : items) {
+            rows.add(Row.of(item));
+        }
+        afterWrite(rows, task, 0);
+    }
+
+    private static void afterWrite(List<Row> rows, Runnable task, int tries) {
+        if (!isRunning()) {
+            task.run();
+            return;
+        }
+
+        flush();
+        // The persistence thread is a single one, so this runs after every batch handed to it by the flush.
+        // A row that failed has been queued again by then
+        executor.execute(() -> {
+            if (!plugin.isEnabled()) return;
+
+            if (!isPending(rows)) {
+                Bukkit.getScheduler().runTask(plugin, task);
+            } else if (tries + 1 < MAX_AFTER_WRITE_TRIES) {
+                long delay = Math.min(flushInterval << tries, MAX_RETRY_DELAY_MILLIS / 50);
+                Bukkit.getScheduler().runTaskLater(plugin, () -> afterWrite(rows, task, tries + 1), delay);
+            } else {
+                plugin.getLogger().warning("Gave up waiting for " + rows.size() + " rows to be written, " +
+                        "their items are kept in memory");
+            }
+        });
+    }
+
+    private static boolean isPending(List<Row> rows) {
+        synchronized (pending) {
+            for (Row row : rows) {
+                if (pending.containsKey(row)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Flushes the pending operations and waits for the persistence thread to write them.
+     * The batches it didn't get to, and the ones that failed, get a last try on this thread.
+     * If the persistence thread is still writing when the timeout expires, nothing else is written,
+     * since it could still be using the database connections, and the rows that haven't been written
+     * are logged. After this call, saves are written immediately again.
+     *
+     * @return true if the persistence thread has terminated, so that the database connections can be closed
+     */
+    public static boolean stop() {
+        if (!isRunning()) return true;
+
+        flushTask.cancel();
+        flush();
+        executor.shutdown();
+
+        long timeout = plugin.getConfig().getLong("persistence.shutdown-timeout-seconds", 10L);
+        boolean terminated;
+        try {
+            terminated = executor.awaitTermination(timeout, TimeUnit.SECONDS);
+            if (!terminated) {
+                executor.shutdownNow();
+                terminated = executor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            terminated = executor.isTerminated();
+        }
+
+        // The batches that haven't been written are older than anything left pending, and newer than the ones before them
+        Map<Row, DatabaseItem<?>> unwrittenOperations = new LinkedHashMap<>();
+        for (Batch batch : unwritten) {
+            unwrittenOperations.putAll(batch.operations());
+        }
+        unwritten.clear();
+
+        Map<Row, DatabaseItem<?>> failed;
+        synchronized (pending) {
+            unwrittenOperations.forEach(pending::putIfAbsent);
+            failed = new LinkedHashMap<>(pending);
+            pending.clear();
+        }
+        backoffs.clear();
+        if (failed.isEmpty()) return terminated;
+
+        if (!terminated) {
+            plugin.getLogger().severe("Timed out while writing the database, the changes to these rows are lost: " +
+                    failed.keySet().stream().map(Row::toString).collect(Collectors.joining(", ")));
+            return false;
+        }
+
+        for (Map.Entry<Row, DatabaseItem<?>> operation : failed.entrySet()) {
+            Row row = operation.getKey();
+            try {
+                if (operation.getValue() == null) DatabaseManager.delete(row.type(), row.key(), row.file());
+                else DatabaseManager.save(operation.getValue(), row.file());
+            } catch (SQLException | IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to write the row " + row.key() +
+                        " to the database file " + row.file().getName() + ", its changes are lost", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The writes handed to the persistence thread for a database file, together with the operations
+     * they come from, which are queued again if the writes fail
+     */
+    private record Batch(File file, List<DatabaseManager.Write> writes, Map<Row, DatabaseItem<?>> operations) {
+    }
+
+    /**
+     * How many times in a row a database file has failed to be written, and when it can be tried again.
+     * The delay doubles with every failure, starting from the flush interval
+     */
+    private record Backoff(int failures, long retryAt) {
+        private static Backoff after(Backoff previous) {
+            int failures = previous == null ? 1 : previous.failures() + 1;
+            long delay = Math.min((flushInterval * 50L) << Math.min(failures - 1, 20), MAX_RETRY_DELAY_MILLIS);
+            return new Backoff(failures, System.currentTimeMillis() + delay);
+        }
+    }
+
+    /**
+     * Identifies a row of a database file
+     */
+    private record Row(File file, Class<?> type, String key) {
+        private static Row of(DatabaseItem<?> item) {
+            return new Row(item.getFile(), item.getClass(), item.getDatabaseKey());
+        }
+
+        @Override
+        public String toString() {
+            return file.getName() + "/" + type.getSimpleName() + "/" + key;
+        }
+    }
+}
@@ -7,6 +7,8 @@ import io.github.toniidev.toniifarmworlds.classes.Farm;
 import io.github.toniidev.toniifarmworlds.classes.HistoryAction;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 public class FarmTypeAdapter extends TypeAdapter<Farm> {
@@ -31,33 +33,42 @@ public class FarmTypeAdapter extends TypeAdapter<Farm> {
 
     @Override
     public Farm read(JsonReader in) throws IOException {
-        Farm farm = new Farm();
+        UUID owner = null;
+        String worldName = null;
+        List<UUID> whitelist = new ArrayList<>();
+        List<HistoryAction> history = new ArrayList<>();
+
+        // Fields are collected first and the farm is built at the end, so that reading
+        // a farm never triggers a save of a half-read farm
         in.beginObject();
         while (in.hasNext()) {
             switch (in.nextName()) {
                 case "owner":
-                    farm.setOwner(UUID.fromString(in.nextString()));
+                    owner = UUID.fromString(in.nextString());
                     break;
                 case "whitelist":
                     in.beginArray();
                     while (in.hasNext()) {
-                        farm.getWhitelist().add(UUID.fromString(in.nextString()));
+                        whitelist.add(UUID.fromString(in.nextString()));
                     }
                     in.endArray();
                     break;
                 case "worldName":
-                    farm.setWorldName(in.nextString());
+                    worldName = in.nextString();
                     break;
                 case "history":
                     in.beginArray();
                     while (in.hasNext()) {
-                        farm.getHistory().add(HistoryAction.fromString(in.nextString())); // Assuming HistoryAction has a fromString method
+                        history.add(HistoryAction.fromString(in.nextString())); // Assuming HistoryAction has a fromString method
                     }
                     in.endArray();
                     break;
+                default:
+                    in.skipValue();
+                    break;
             }
         }
         in.endObject();
-        return farm;
+        return new Farm(owner, worldName, whitelist, history);
     }
 }
\ No newline at end of file
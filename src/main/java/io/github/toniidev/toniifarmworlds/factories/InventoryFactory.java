@@ -8,15 +8,16 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitRunnable;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Inventory factory. This class is going to be used to create any
@@ -26,11 +27,24 @@ import java.util.Map;
 public class InventoryFactory implements Listener {
 
     /**
-     * This list is temporary, it means that it will be reset when the plugin enables or
-     * disables. But that's ok, because we don't need its items to be always available: any
-     * time we show a Player this Inventory, it is created again.
+     * Every Inventory built by an InventoryFactory is owned by a Holder that points back to the
+     * factory. This way getting the factory behind an Inventory takes constant time, and there is no
+     * global list to clean up: a factory is freed together with its Inventory, once nobody views it anymore.
      */
-    private final static List<InventoryFactory> factories = new ArrayList<>();
+    private static class Holder implements InventoryHolder {
+        private final InventoryFactory factory;
+
+        private Holder(InventoryFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public Inventory getInventory() {
+            return factory.get();
+        }
+    }
+
+    private final Holder holder = new Holder(this);
 
     /// It cannot be final since if we want to set a new title for this Inventory
     private Inventory inventory;
@@ -38,15 +52,18 @@ public class InventoryFactory implements Listener {
     private Plugin main;
 
     private String title = " ";
-    private Map<Integer, Inventory> redirects = new HashMap<>();
 
-    private Map<Integer, InventoryInterface> actions = new HashMap<>();
+    /// Both are indexed by raw slot, and have the same size of the Inventory
+    private Inventory[] redirects;
+    private InventoryInterface[] actions;
     private InventoryInterface globalAction;
 
-    private final List<Integer> slotsThatDoNotAcceptClicks = new ArrayList<>();
+    /// A set bit means that the slot with that raw index does not accept clicks
+    private BitSet slotsThatDoNotAcceptClicks = new BitSet();
 
     private boolean isClosingAllowed = true;
-    private Inventory inventoryToShowOnClose = null;
+    /// It is only evaluated when the Inventory gets closed, so the Inventory to go back to is built only if needed
+    private Supplier<Inventory> inventoryToShowOnClose = null;
 
     /**
      * Initialize a reference to this. It is only used to register Listener
@@ -56,43 +73,44 @@ public class InventoryFactory implements Listener {
     }
 
     /**
-     * Creates an InventoryFactory starting from an already existing Inventory instance
+     * Creates an InventoryFactory starting from the contents of an already existing Inventory instance.
+     * The factory works with a copy of it, since it must own the Inventory it manages. The title of an
+     * Inventory can't be read back from it, so the copy has a blank title: use the constructor that takes
+     * the title to keep the one of the existing Inventory
      *
-     * @param existingInventory The existing Inventory instance that the InventoryFactory will work with
+     * @param existingInventory The existing Inventory instance whose contents the InventoryFactory will work with
      * @param plugin            The main plugin instance
      */
     public InventoryFactory(Inventory existingInventory, Plugin plugin) {
-        this.inventory = existingInventory;
-        this.main = plugin;
+        this(existingInventory, " ", plugin);
+    }
 
-        InventoryFactory.factories.add(this);
+    /**
+     * Creates an InventoryFactory starting from the contents of an already existing Inventory instance.
+     * The factory works with a copy of it, since it must own the Inventory it manages
+     *
+     * @param existingInventory The existing Inventory instance whose contents the InventoryFactory will work with
+     * @param title             The title of the existing Inventory, which the copy keeps
+     * @param plugin            The main plugin instance
+     */
+    public InventoryFactory(Inventory existingInventory, String title, Plugin plugin) {
+        this.inventory = InventoryUtils.cloneInventory(existingInventory, title, this.holder);
+        this.main = plugin;
+        this.title = title;
+        this.redirects = new Inventory[this.inventory.getSize()];
+        this.actions = new InventoryInterface[this.inventory.getSize()];
     }
 
     public InventoryFactory clone() {
-        InventoryFactory clone = new InventoryFactory(this.get(), this.getMainPluginInstance())
-                .setTitle(this.getTitle());
-
-        if (this.getActions() != null) {
-            Map<Integer, InventoryInterface> clonedActions = new HashMap<>(this.getActions());
-            clone.setActions(clonedActions);
-        }
-
-        if (this.getGlobalAction() != null) {
-            clone.setGlobalAction(this.getGlobalAction());
-        }
+        InventoryFactory clone = new InventoryFactory(this.get(), this.getTitle(), this.getMainPluginInstance());
 
-        if (this.getRedirects() != null) {
-            Map<Integer, Inventory> clonedRedirects = new HashMap<>(this.getRedirects());
-            clone.setRedirects(clonedRedirects);
-        }
+        clone.actions = this.actions.clone();
+        clone.redirects = this.redirects.clone();
+        clone.globalAction = this.globalAction;
 
-        if (this.getInventoryToShowOnClose() != null) {
-            clone.setInventoryToShowOnClose(this.getInventoryToShowOnClose());
-        }
+        clone.inventoryToShowOnClose = this.inventoryToShowOnClose;
 
-        for (int i = 0; i < this.inventory.getSize(); i++) {
-            clone.setClicksAllowed(i, this.getClicksPermissionStatus(i));
-        }
+        clone.slotsThatDoNotAcceptClicks = (BitSet) this.slotsThatDoNotAcceptClicks.clone();
 
         return clone;
     }
@@ -109,11 +127,11 @@ public class InventoryFactory implements Listener {
      * @param plugin The main plugin instance
      */
     public InventoryFactory(int rows, String title, Plugin plugin) {
-        this.inventory = Bukkit.createInventory(null, rows * 9, title);
+        this.inventory = Bukkit.createInventory(this.holder, rows * 9, title);
         this.main = plugin;
         this.title = title;
-
-        InventoryFactory.factories.add(this);
+        this.redirects = new Inventory[this.inventory.getSize()];
+        this.actions = new InventoryInterface[this.inventory.getSize()];
     }
 
     /**
@@ -150,7 +168,8 @@ public class InventoryFactory implements Listener {
      * @return This InventoryFactory instance
      */
     public InventoryFactory setTitle(String title) {
-        this.inventory = InventoryUtils.cloneInventory(this.inventory, title);
+        this.inventory = InventoryUtils.cloneInventory(this.inventory, title, this.holder);
+        this.title = title;
         return this;
     }
 
@@ -203,17 +222,9 @@ public class InventoryFactory implements Listener {
      * @return This InventoryFactory instance
      */
     public InventoryFactory setClicksAllowed(int slot, boolean value) {
-        /// If it says that clicks are not allowed, we add the given slot
-        /// to the list of the slots on which clicks are not enabled.
-        if (!value) {
-            if (!slotsThatDoNotAcceptClicks.contains(slot)) {
-                slotsThatDoNotAcceptClicks.add(slot);
-            }
-        } else { /// if it says that clicks are allowed, we remove this slot from the list
-            if (slotsThatDoNotAcceptClicks.contains(slot)) {
-                slotsThatDoNotAcceptClicks.remove(slot);
-            }
-        }
+        /// If it says that clicks are not allowed, we mark the given slot
+        /// as one of the slots on which clicks are not enabled, otherwise we unmark it
+        slotsThatDoNotAcceptClicks.set(slot, !value);
 
         return this;
     }
@@ -235,21 +246,9 @@ public class InventoryFactory implements Listener {
      * @return This InventoryFactory instance
      */
     public InventoryFactory setClicksAllowed(boolean value) {
-        /// If it says that clicks are not allowed, we add all the Inventory
-        /// slots to the list of the slots on which clicks are not enabled.
-        if (!value) {
-            for (int i = 0; i < this.inventory.getSize(); i++) {
-                if (!slotsThatDoNotAcceptClicks.contains(i)) {
-                    slotsThatDoNotAcceptClicks.add(i);
-                }
-            }
-        } else { /// if it says that clicks are allowed, we remove all the slots that should be disabled from the list
-            for (int i = 0; i < this.inventory.getSize(); i++) {
-                if (slotsThatDoNotAcceptClicks.contains(i)) {
-                    slotsThatDoNotAcceptClicks.remove(i);
-                }
-            }
-        }
+        /// If it says that clicks are not allowed, we mark all the Inventory
+        /// slots as slots on which clicks are not enabled, otherwise we unmark them all
+        slotsThatDoNotAcceptClicks.set(0, this.inventory.getSize(), !value);
 
         return this;
     }
@@ -271,7 +270,19 @@ public class InventoryFactory implements Listener {
      * @param inventory The Inventory that has to be shown on close
      * @return This InventoryFactory instance
      */
-    public InventoryFactory setInventoryToShowOnClose(Inventory inventory) {
+    public InventoryFactory setInventoryToShowOnClose(@Nullable Inventory inventory) {
+        this.inventoryToShowOnClose = inventory == null ? null : () -> inventory;
+        return this;
+    }
+
+    /**
+     * Sets how to build the Inventory that has to be shown when the Inventory that this InventoryFactory is editing
+     * gets closed. The supplier is only called when the Inventory actually gets closed
+     *
+     * @param inventory The supplier of the Inventory that has to be shown on close
+     * @return This InventoryFactory instance
+     */
+    public InventoryFactory setInventoryToShowOnClose(@Nullable Supplier<Inventory> inventory) {
         this.inventoryToShowOnClose = inventory;
         return this;
     }
@@ -284,7 +295,7 @@ public class InventoryFactory implements Listener {
      * @return This InventoryFactory instance
      */
     public InventoryFactory setAction(int slot, InventoryInterface action) {
-        this.actions.put(slot, action);
+        this.actions[slot] = action;
         return this;
     }
 
@@ -296,7 +307,7 @@ public class InventoryFactory implements Listener {
      * @return This InventoryFactory instance
      */
     public InventoryFactory setRedirect(int slot, Inventory inventory) {
-        this.redirects.put(slot, inventory);
+        this.redirects[slot] = inventory;
         return this;
     }
 
@@ -307,9 +318,9 @@ public class InventoryFactory implements Listener {
      * @return true if clicks are allowed on this slot, false if clicks aren't allowed on this slot
      */
     public boolean getClicksPermissionStatus(int slot) {
-        /// slotsThatDoNotAcceptClicks.contains(slot) => !clickPermissionStatus
-        /// !slotsThatDoNotAcceptClicks.contains(slot) => clickPermissionStatus
-        return !slotsThatDoNotAcceptClicks.contains(slot);
+        /// slotsThatDoNotAcceptClicks.get(slot) => !clickPermissionStatus
+        /// !slotsThatDoNotAcceptClicks.get(slot) => clickPermissionStatus
+        return !slotsThatDoNotAcceptClicks.get(slot);
     }
 
     /**
@@ -325,55 +336,24 @@ public class InventoryFactory implements Listener {
      * Default getter for this class
      *
      * @return The Inventory that has to be shown when the Inventory that this InventoryFactory instance is editing
-     * gets closed. If there is no Inventory that has to be shown on close, it returns null
+     * gets closed, building it if it was set through a supplier. If there is no Inventory that has to be shown
+     * on close, it returns null
      */
     @Nullable
     public Inventory getInventoryToShowOnClose() {
-        return this.inventoryToShowOnClose;
-    }
-
-    /**
-     * Default getter for this class
-     *
-     * @return A Map of Inventories to open when certain slots are clicked. If there are no redirects, it returns null
-     */
-    @Nullable
-    public Map<Integer, Inventory> getRedirects() {
-        if (this.redirects.isEmpty()) return null;
-        return this.redirects;
+        return this.inventoryToShowOnClose == null ? null : this.inventoryToShowOnClose.get();
     }
 
     /**
-     * Default getter for this class
+     * Gets the Inventory that has to be opened when the specified slot gets clicked
      *
-     * @return A Map of actions to execute when certain slots are clicked. If there are no actions, it returns null
+     * @param slot The raw slot that gets clicked
+     * @return The Inventory to open, or null if the slot has no redirect
      */
     @Nullable
-    public Map<Integer, InventoryInterface> getActions() {
-        if (this.actions.isEmpty()) return null;
-        return this.actions;
-    }
-
-    /**
-     * Default setter for this class
-     *
-     * @param redirects New value for Redirects map
-     * @return this InventoryFactory instance
-     */
-    public InventoryFactory setRedirects(Map<Integer, Inventory> redirects) {
-        this.redirects = redirects;
-        return this;
-    }
-
-    /**
-     * Default setter for this class
-     *
-     * @param actions New value for Actions map
-     * @return this InventoryFactory instance
-     */
-    public InventoryFactory setActions(Map<Integer, InventoryInterface> actions) {
-        this.actions = actions;
-        return this;
+    public Inventory getRedirect(int slot) {
+        if (slot < 0 || slot >= this.redirects.length) return null;
+        return this.redirects[slot];
     }
 
     /**
@@ -397,140 +377,92 @@ public class InventoryFactory implements Listener {
      * behind the specified Inventory if it has one
      */
     @Nullable
-    public static InventoryFactory getFactory(Inventory inventory) {
-        return InventoryFactory.factories.stream()
-                .filter(x -> x.get().equals(inventory))
-                .findFirst().orElse(null);
+    public static InventoryFactory getFactory(@Nullable Inventory inventory) {
+        if (inventory == null) return null;
+        if (!(inventory.getHolder() instanceof Holder holder)) return null;
+
+        /// An Inventory replaced through setTitle still points to its old factory, but it isn't managed anymore
+        return holder.factory.get() == inventory ? holder.factory : null;
     }
 
     /**
      * Tells whether the specified Inventory is a custom inventory or not.
-     * An Inventory is considered a "custom inventory" if it was built by an InventoryFactory.
-     * If it was built with an InventoryFactory, it means "factories" list contains that
-     * specified inventory
+     * An Inventory is considered a "custom inventory" if it was built by an InventoryFactory,
+     * which means it is owned by the Holder of that factory
      *
      * @param inventory The Inventory we must check whether is a custom inventory or not
      * @return true if the Inventory is a custom inventory, false if it isn't
      */
-    public static boolean isCustomInventory(Inventory inventory) {
-        /// getFactory(inventory) == null => !factories.contains(inventory)
-        /// getFactory(inventory) != null => factories.contains(inventory)
+    public static boolean isCustomInventory(@Nullable Inventory inventory) {
         return getFactory(inventory) != null;
     }
 
+    /**
+     * Gets the action to execute when the specified slot gets clicked
+     *
+     * @param slot The raw slot that gets clicked
+     * @return The action to execute, or null if the slot has no action
+     */
     @Nullable
     public InventoryInterface getAction(int slot) {
-        Map.Entry<Integer, InventoryInterface> entry = this.actions.entrySet().stream()
-                .filter(x -> x.getKey().equals(slot))
-                .findFirst().orElse(null);
-
-        if(entry == null) return null;
-        return entry.getValue();
+        if (slot < 0 || slot >= this.actions.length) return null;
+        return this.actions[slot];
     }
 
     public InventoryFactory setGlobalAction(InventoryInterface globalAction) {
-        for(int i = 0; i < this.inventory.getSize(); i++){
-            this.setAction(i, globalAction);
-        }
+        Arrays.fill(this.actions, globalAction);
+        this.globalAction = globalAction;
         return this;
     }
 
     /**
-     * Handling InventoryClickEvent to disable clicks on the slots
-     * on which clicks are disabled
+     * Handling InventoryClickEvent for every custom inventory. The factory is resolved once,
+     * then the click is handled in this order: clicks permission, redirect, action
      */
     @EventHandler
     public void onClick(InventoryClickEvent e) {
-        if (!InventoryFactory.isCustomInventory(e.getClickedInventory())) return;
-
-        InventoryFactory factory = InventoryFactory.getFactory(e.getClickedInventory());
-        assert factory != null;
-        if (!factory.getClicksPermissionStatus(e.getRawSlot())) e.setCancelled(true);
-    }
-
-    /**
-     * Handling InventoryClickEvent to open Inventories linked to slots.
-     * This action is called "redirect"
-     */
-    @EventHandler
-    public void onRedirect(InventoryClickEvent e) {
-        if (!InventoryFactory.isCustomInventory(e.getInventory())) return;
-
-        InventoryFactory factory = InventoryFactory.getFactory(e.getInventory());
-        assert factory != null;
-
-        if (factory.getRedirects() == null) return;
-        if (!factory.getRedirects().containsKey(e.getRawSlot())) return;
-
-        if (factory.getInventoryToShowOnClose() == null)
-            e.getWhoClicked().openInventory(factory.getRedirects().get(e.getRawSlot()));
-        else {
-            Inventory inventoryToShowOnClose = factory.getInventoryToShowOnClose();
-            factory.setInventoryToShowOnClose(null);
-            e.getWhoClicked().openInventory(factory.getRedirects().get(e.getRawSlot()));
-            factory.setInventoryToShowOnClose(inventoryToShowOnClose);
-        }
-    }
-
-    /**
-     * Handling InventoryClickEvent to execute actions linked to slots
-     */
-    @EventHandler
-    public void onAction(InventoryClickEvent e) {
-        if (!InventoryFactory.isCustomInventory(e.getInventory())) return;
-
         InventoryFactory factory = InventoryFactory.getFactory(e.getInventory());
-        assert factory != null;
+        if (factory == null) return;
 
-        if (factory.getActions() == null) return;
-        if (!factory.getActions().containsKey(e.getRawSlot())) return;
+        /// Raw slots outside the custom inventory belong to the Player inventory, or are outside the window
+        int slot = e.getRawSlot();
+        if (slot < 0 || slot >= factory.get().getSize()) return;
 
-        Inventory prev = factory.getInventoryToShowOnClose();
-        boolean closingAllowed = factory.isClosingAllowed;
-        if(!closingAllowed) factory.setClosingAllowed(true);
+        if (!factory.getClicksPermissionStatus(slot)) e.setCancelled(true);
 
-        factory.setInventoryToShowOnClose(null);
-        factory.getActions().get(e.getRawSlot()).run(e);
-
-        factory.setInventoryToShowOnClose(prev);
-        factory.setClosingAllowed(closingAllowed);
-    }
-
-    /**
-     * Handling InventoryCloseEvent to open Inventory that is scheduled to open
-     * when a CustomInventory gets closed
-     */
-    @EventHandler
-    public void onCloseInventoryToShowAnother(InventoryCloseEvent e) {
-        if (!InventoryFactory.isCustomInventory(e.getInventory())) return;
+        Inventory redirect = factory.redirects[slot];
+        if (redirect != null) {
+            Supplier<Inventory> inventoryToShowOnClose = factory.inventoryToShowOnClose;
+            factory.inventoryToShowOnClose = null;
+            e.getWhoClicked().openInventory(redirect);
+            factory.inventoryToShowOnClose = inventoryToShowOnClose;
+        }
 
-        InventoryFactory factory = InventoryFactory.getFactory(e.getInventory());
-        assert factory != null;
+        InventoryInterface action = factory.actions[slot];
+        if (action != null) {
+            Supplier<Inventory> prev = factory.inventoryToShowOnClose;
+            boolean closingAllowed = factory.isClosingAllowed;
+            if (!closingAllowed) factory.setClosingAllowed(true);
 
-        if (factory.getInventoryToShowOnClose() == null) return;
+            factory.inventoryToShowOnClose = null;
+            action.run(e);
 
-        /// We must use a BukkitRunnable because the InventoryCloseEvent is not synced with the server
-        /// if I remember well. Btw, if it is synced, it works even in this way, so I prefer to use it
-        /// this way
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                e.getPlayer().openInventory(factory.getInventoryToShowOnClose());
-            }
-        }.runTaskLater(factory.getMainPluginInstance(), 1L);
+            factory.inventoryToShowOnClose = prev;
+            factory.setClosingAllowed(closingAllowed);
+        }
     }
 
     /**
-     * Handling InventoryCloseEvent to disable Inventory close
+     * Handling InventoryCloseEvent for every custom inventory. If closing the Inventory is not allowed
+     * it gets opened again, otherwise the Inventory that is scheduled to open on close gets opened
      */
     @EventHandler
     public void onClose(InventoryCloseEvent e) {
-        if (!InventoryFactory.isCustomInventory(e.getInventory())) return;
-
         InventoryFactory factory = InventoryFactory.getFactory(e.getInventory());
-        assert factory != null;
+        if (factory == null) return;
 
-        if (factory.getClosePermissionStatus()) return;
+        Supplier<Inventory> toOpen = factory.getClosePermissionStatus() ? factory.inventoryToShowOnClose : factory::get;
+        if (toOpen == null) return;
 
         /// We must use a BukkitRunnable because the InventoryCloseEvent is not synced with the server
         /// if I remember well. Btw, if it is synced, it works even in this way, so I prefer to use it
@@ -538,7 +470,8 @@ public class InventoryFactory implements Listener {
         new BukkitRunnable() {
             @Override
             public void run() {
-                e.getPlayer().openInventory(factory.get());
+                Inventory inventory = toOpen.get();
+                if (inventory != null) e.getPlayer().openInventory(inventory);
             }
         }.runTaskLater(factory.getMainPluginInstance(), 1L);
     }
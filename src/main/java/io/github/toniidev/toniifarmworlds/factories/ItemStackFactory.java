@@ -1,8 +1,10 @@
 package io.github.toniidev.toniifarmworlds.factories;
 
 import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
@@ -15,6 +17,14 @@ import java.util.List;
 public class ItemStackFactory {
     private final ItemStack stack;
 
+    /// The ItemMeta is read once, edited by every method, and applied to the stack only in get().
+    /// Every getItemMeta() call returns a new copy, so reading it once per edit is expensive
+    @Nullable
+    private final ItemMeta meta;
+    /// The lore lines are buffered as well, and it is null until the lore gets edited
+    @Nullable
+    private List<String> lore;
+
     /**
      * Checks if this stack has ItemMeta. By default, any ItemStack but AIR has
      * ItemMeta
@@ -22,13 +32,13 @@ public class ItemStackFactory {
      * @return true if the Stack has an ItemMeta, false if it doesn't
      */
     private boolean checkItemMeta() {
-        return stack.getItemMeta() != null;
+        return meta != null;
     }
 
     /**
      * Checks if this stack has ItemMeta and notifies the console if it doesn't.
      * If any method implements this function like this: if(notifyMissingItemMeta()) return ...,
-     * the ItemStack has 100% an ItemMeta. So we can use assert stack.getItemMeta() != null
+     * the ItemStack has 100% an ItemMeta. So we can use assert meta != null
      *
      * @return true if a console message has been sent, false if anything is ok
      */
@@ -44,7 +54,7 @@ public class ItemStackFactory {
      * @param material The Material of the ItemStack the Factory has to work with
      */
     public ItemStackFactory(Material material) {
-        this.stack = new ItemStack(material, 1);
+        this(new ItemStack(material, 1));
     }
 
     /**
@@ -54,7 +64,7 @@ public class ItemStackFactory {
      * @param amount   The amount of the ItemStack the Factory has to work with
      */
     public ItemStackFactory(Material material, int amount) {
-        this.stack = new ItemStack(material, amount);
+        this(new ItemStack(material, amount));
     }
 
     /**
@@ -64,19 +74,19 @@ public class ItemStackFactory {
      */
     public ItemStackFactory(ItemStack itemStack) {
         this.stack = itemStack;
+        this.meta = itemStack.getItemMeta();
     }
 
     /**
-     * Gets the ItemMeta of the ItemStack the ItemStackFactory is working with and
-     * gets its name
+     * Gets the name of the ItemStack the ItemStackFactory is working with
      *
      * @return The item DisplayName of the ItemStack
      */
     @Nullable
     public String getName() {
         if (notifyMissingItemMeta()) return null;
-        assert stack.getItemMeta() != null;
-        return stack.getItemMeta().getDisplayName();
+        assert meta != null;
+        return meta.getDisplayName();
     }
 
     /**
@@ -87,11 +97,9 @@ public class ItemStackFactory {
      */
     public ItemStackFactory setName(String name) {
         if (notifyMissingItemMeta()) return null;
-        assert stack.getItemMeta() != null;
+        assert meta != null;
 
-        ItemMeta meta = stack.getItemMeta();
         meta.setDisplayName(name);
-        stack.setItemMeta(meta);
         return this;
     }
 
@@ -103,11 +111,8 @@ public class ItemStackFactory {
      */
     public ItemStackFactory setLore(List<String> lore) {
         if (notifyMissingItemMeta()) return null;
-        assert stack.getItemMeta() != null;
 
-        ItemMeta meta = stack.getItemMeta();
-        meta.setLore(lore);
-        stack.setItemMeta(meta);
+        this.lore = lore != null ? new ArrayList<>(lore) : new ArrayList<>();
         return this;
     }
 
@@ -120,13 +125,10 @@ public class ItemStackFactory {
      */
     public ItemStackFactory addLoreLine(String line) {
         if (notifyMissingItemMeta()) return null;
-        assert stack.getItemMeta() != null;
+        assert meta != null;
 
-        ItemMeta meta = stack.getItemMeta();
-        List<String> lore = (meta.getLore() != null) ? new ArrayList<>(meta.getLore()) : new ArrayList<>();
+        if (lore == null) lore = (meta.getLore() != null) ? new ArrayList<>(meta.getLore()) : new ArrayList<>();
         lore.add("§7" + line);
-        meta.setLore(lore);
-        stack.setItemMeta(meta);
         return this;
     }
 
@@ -141,12 +143,33 @@ public class ItemStackFactory {
     }
 
     /**
-     * Finally, gets the result of the ItemStackFactory.
+     * Stores a value in the PersistentDataContainer of the given ItemStack
+     *
+     * @param key   The key of the value
+     * @param type  The type of the value
+     * @param value The value to store
+     * @return This ItemFactory instance
+     */
+    public <P, C> ItemStackFactory setPersistentData(NamespacedKey key, PersistentDataType<P, C> type, C value) {
+        if (notifyMissingItemMeta()) return null;
+        assert meta != null;
+
+        meta.getPersistentDataContainer().set(key, type, value);
+        return this;
+    }
+
+    /**
+     * Finally, gets the result of the ItemStackFactory. It applies every edit to the ItemStack
+     * at once, so it must be called again if the ItemStackFactory edits the ItemStack after this.
      * This should only be used at the end of the creation.
      *
      * @return The created ItemStack
      */
     public ItemStack get() {
+        if (meta != null) {
+            if (lore != null) meta.setLore(lore);
+            stack.setItemMeta(meta);
+        }
         return this.stack;
     }
 }
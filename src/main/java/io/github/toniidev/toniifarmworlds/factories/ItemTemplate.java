@@ -0,0 +1,135 @@
+package io.github.toniidev.toniifarmworlds.factories;
+
+import io.github.toniidev.toniifarmworlds.utils.StringUtils;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.function.Supplier;
+
+/**
+ * Items that are shown in the menus over and over. Every template is built once, when the plugin enables,
+ * and then frozen: callers only ever get copies of it, which take a single ItemMeta copy instead of a whole
+ * rebuild, so editing what they get never changes the other menus. Items that also have a variable part are
+ * copied from their template through withLore.
+ */
+public enum ItemTemplate {
+    /// Pane used to fill the empty slots of the menus
+    FILLER(() -> new ItemStackFactory(Material.BLACK_STAINED_GLASS_PANE)
+            .setName(" ")
+            .get()),
+
+    /// Page navigation items of the MultipleInventoryFactory. The page numbers are added as lore
+    PAGE_INDICATOR(() -> new ItemStackFactory(Material.COMPASS)
+            .setName(StringUtils.formatColorCodes('&', "&ePagina dell'inventario"))
+            .get()),
+    PREVIOUS_PAGE(() -> new ItemStackFactory(Material.ARROW)
+            .setName(StringUtils.formatColorCodes('&', "&cPagina precedente"))
+            .get()),
+    NEXT_PAGE(() -> new ItemStackFactory(Material.SPECTRAL_ARROW)
+            .setName(StringUtils.formatColorCodes('&', "&aPagina successiva"))
+            .get()),
+
+    /// Buttons of the farm management menus
+    CREATE_FARM(() -> new ItemStackFactory(Material.GREEN_STAINED_GLASS_PANE)
+            .setName(StringUtils.formatColorCodes('&', "&aCrea fattoria"))
+            .addLoreLine("Crea una tua fattoria. Il tuo posto tranquillo,")
+            .addLoreLine("dove nessuno ti può disturbare. Solo tu e le tue")
+            .addLoreLine("mucche.")
+            .addBlankLoreLine()
+            .addLoreLine(StringUtils.formatColorCodes('&', "&eClicca per creare una fattoria!"))
+            .get()),
+    GO_TO_FARM(() -> new ItemStackFactory(Material.CYAN_STAINED_GLASS_PANE)
+            .setName(StringUtils.formatColorCodes('&', "&bVai alla fattoria"))
+            .addLoreLine("Vai nella tua fattoria")
+            .addBlankLoreLine()
+            .addLoreLine(StringUtils.formatColorCodes('&', "&eClicca per teletrasportarti!"))
+            .get()),
+    MANAGE_FARM(() -> new ItemStackFactory(Material.FILLED_MAP)
+            .setName(StringUtils.formatColorCodes('&', "&6Gestisci fattoria"))
+            .addLoreLine("Apri il menu di gestione della tua")
+            .addLoreLine("fattoria.")
+            .addBlankLoreLine()
+            .addLoreLine(StringUtils.formatColorCodes('&', "&eClicca per aprire l'inventario!"))
+            .get()),
+    MANAGE_WHITELIST(() -> new ItemStackFactory(Material.FILLED_MAP)
+            .setName(StringUtils.formatColorCodes('&', "&6Gestisci whitelist"))
+            .addLoreLine("Gestisci i giocatori che possono entrare")
+            .addLoreLine("nella tua fattoria. Attento, se sono")
+            .addLoreLine("comunisti potrebbero proporre sistemi")
+            .addLoreLine("economici di merda.")
+            .addBlankLoreLine()
+            .addLoreLine(StringUtils.formatColorCodes('&', "&eClicca per saperne di più!"))
+            .get()),
+
+    /// Buttons of the farm management menus that also show some numbers. The numbers are added as lore
+    OTHER_FARMS(() -> new ItemStackFactory(Material.PLAYER_HEAD)
+            .setName(StringUtils.formatColorCodes('&', "&9Altre fattorie"))
+            .addLoreLine("Accedi alle fattorie in cui sei stato")
+            .addLoreLine("invitato.")
+            .addBlankLoreLine()
+            .get()),
+    HISTORY(() -> new ItemStackFactory(Material.FILLED_MAP)
+            .setName(StringUtils.formatColorCodes('&', "&bCronologia accessi"))
+            .addLoreLine("Ti hanno stuprato le mucche? Nessun problema!")
+            .addLoreLine("fai l'investigatore e vedi chi è stato, che gli")
+            .addLoreLine("facciamo i complimenti")
+            .get()),
+    MANAGE_WHITELISTED(() -> new ItemStackFactory(Material.FILLED_MAP)
+            .setName(StringUtils.formatColorCodes('&', "&6Gestisci giocatori whitelistati"))
+            .addLoreLine("Visualizza i giocatori attualmente whitelistati")
+            .addLoreLine("e, se vuoi, rimuovili dalla whitelist")
+            .addBlankLoreLine()
+            .get()),
+    ADD_TO_WHITELIST(() -> new ItemStackFactory(Material.FILLED_MAP)
+            .setName(StringUtils.formatColorCodes('&', "&9Aggiungi giocatore alla whitelist"))
+            .addLoreLine("Scegli tra la lista dei giocatori attualmente")
+            .addLoreLine("online qualcuno da aggiungere alla whitelist")
+            .addBlankLoreLine()
+            .get());
+
+    private final Supplier<ItemStack> builder;
+    private ItemStack item;
+
+    ItemTemplate(Supplier<ItemStack> builder) {
+        this.builder = builder;
+    }
+
+    /**
+     * Builds every template. It should be called when the plugin enables, so that no template
+     * gets built while a player is opening a menu
+     */
+    public static void load() {
+        for (ItemTemplate template : values()) {
+            template.getTemplate();
+        }
+    }
+
+    /**
+     * Gets a copy of this template
+     *
+     * @return A new ItemStack that can be edited
+     */
+    public ItemStack get() {
+        return this.getTemplate().clone();
+    }
+
+    // The frozen instance of this template, built the first time it is needed. It must never leave this class
+    private ItemStack getTemplate() {
+        if (this.item == null) this.item = builder.get();
+        return this.item;
+    }
+
+    /**
+     * Creates a copy of this template with some more lore lines
+     *
+     * @param loreLines The lines to add to the lore of the template
+     * @return A new ItemStack that can be edited
+     */
+    public ItemStack withLore(String... loreLines) {
+        ItemStackFactory factory = new ItemStackFactory(this.get());
+        for (String line : loreLines) {
+            factory.addLoreLine(line);
+        }
+        return factory.get();
+    }
+}
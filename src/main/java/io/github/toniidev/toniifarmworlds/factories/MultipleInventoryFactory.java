@@ -1,27 +1,40 @@
 package io.github.toniidev.toniifarmworlds.factories;
 
-import io.github.toniidev.toniifarmworlds.utils.InventoryUtils;
 import io.github.toniidev.toniifarmworlds.utils.StringUtils;
-import org.bukkit.Material;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
 
 /**
  * Multiple Inventory Factory. This class creates an Inventory that can have
  * more pages that can be browsed by an arrow that is on the left of it.
+ * Pages are only built when they are opened, and just the last few built ones are kept.
  */
 public class MultipleInventoryFactory {
-    /// This list contains all the pages of the MultipleInventory
-    private final List<Inventory> pages = new ArrayList<>();
+    /// How many built pages are kept at most. Pages that are not kept get built again when opened
+    private static final int BUILT_PAGES_WINDOW = 3;
+
+    /// This map contains the built pages of the MultipleInventory, by page number, in access order
+    private final Map<Integer, Inventory> pages = new LinkedHashMap<>(BUILT_PAGES_WINDOW + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Inventory> eldest) {
+            return size() > BUILT_PAGES_WINDOW;
+        }
+    };
 
     int[] airSlots = {2, 3, 4, 5, 6, 7, 11, 12, 13, 14, 15, 16, 20, 21, 22, 23, 24, 25, 29,
             30, 31, 32, 33, 34, 38, 39, 40, 41, 42, 43, 47, 48, 49, 50, 51, 52};
 
     private final InventoryFactory baseFactory;
+    /// Builds the item at a given index. It is only called for the items of the pages that get built
+    private final IntFunction<ItemStack> items;
+    private final int size;
+    private final int totalPages;
 
     /**
      * Creates a blank MultipleInventoryFactory instance.
@@ -31,40 +44,59 @@ public class MultipleInventoryFactory {
      * @param startFactory The InventoryFactory on which this MultipleInventoryFactory instance should be based on
      */
     public MultipleInventoryFactory(List<ItemStack> items, InventoryFactory startFactory) {
-        this.baseFactory = startFactory;
-        int totalPages = (int) Math.ceil((double) items.size() / airSlots.length);
-
-        for (int i = 0; i < totalPages; i++) {
-            int startIndex = i * airSlots.length;
-            int endIndex = Math.min(startIndex + airSlots.length, items.size());
-            List<ItemStack> itemsToDisplayInThisPage = items.subList(startIndex, endIndex);
+        this(items.size(), items::get, startFactory);
+    }
 
-            InventoryFactory factory = startFactory.clone();
+    /**
+     * Creates a MultipleInventoryFactory instance that shows a view over a collection of items,
+     * without needing them all to be built. Only the items of the pages that get opened are built.
+     *
+     * @param size         The number of items that this MultipleInventory will contain
+     * @param items        A function that builds the Item at the given index, from 0 to size - 1
+     * @param startFactory The InventoryFactory on which this MultipleInventoryFactory instance should be based on
+     */
+    public MultipleInventoryFactory(int size, IntFunction<ItemStack> items, InventoryFactory startFactory) {
+        if (size < 0) throw new IllegalArgumentException("Size cannot be negative");
 
-            //InventoryFactory factory = new InventoryFactory(InventoryUtils.cloneInventory(startFactory.get(), startFactory.getTitle()), startFactory.getMainPluginInstance());
+        this.baseFactory = startFactory;
+        this.items = items;
+        this.size = size;
+        this.totalPages = (int) Math.ceil((double) size / airSlots.length);
+    }
 
-            factory.fill(new ItemStackFactory(Material.BLACK_STAINED_GLASS_PANE)
-                    .setName(" ").get());
+    /**
+     * Gets the specified page, building it if it isn't among the kept pages
+     *
+     * @param pageNumber The number of the page, starting from 0
+     * @return The Inventory of the specified page
+     */
+    public Inventory getPage(int pageNumber) {
+        if (pageNumber < 0 || pageNumber >= totalPages)
+            throw new IllegalArgumentException("Page " + pageNumber + " does not exist");
 
-            for (int slot : airSlots) {
-                factory.setItem(slot, new ItemStack(Material.AIR));
-            }
+        return pages.computeIfAbsent(pageNumber, this::buildPage);
+    }
 
-            factory.addItem(itemsToDisplayInThisPage, true);
-            setPageNavigationItems(i, totalPages, factory);
+    private Inventory buildPage(int pageNumber) {
+        int startIndex = pageNumber * airSlots.length;
+        int endIndex = Math.min(startIndex + airSlots.length, size);
 
-            pages.add(factory.get());
+        InventoryFactory factory = createTemplate();
+        for (int i = startIndex; i < endIndex; i++) {
+            factory.setItem(airSlots[i - startIndex], items.apply(i));
         }
+
+        setPageNavigationItems(pageNumber, totalPages, factory);
+        return factory.get();
     }
 
     private InventoryFactory createTemplate(){
         InventoryFactory clone = baseFactory.clone();
 
-        clone.fill(new ItemStackFactory(Material.BLACK_STAINED_GLASS_PANE)
-                .setName(" ").get());
+        clone.fill(ItemTemplate.FILLER.get());
 
         for(int slot : airSlots){
-            clone.setItem(slot, new ItemStack(Material.AIR));
+            clone.setItem(slot, null);
         }
 
         return clone;
@@ -77,30 +109,23 @@ public class MultipleInventoryFactory {
      * @param template The InventoryFactory this MultipleInventoryFactory should be based on
      */
     private void setPageNavigationItems(int pageNumber, int totalPages, InventoryFactory template) {
-        template.setItem(9, new ItemStackFactory(Material.COMPASS)
-                .setName(StringUtils.formatColorCodes('&', "&ePagina dell'inventario"))
-                .addLoreLine(StringUtils.formatColorCodes('&', "Pagina corrente: &f" + (pageNumber + 1) +
-                        " &7di &f" + totalPages))
-                .get());
+        template.setItem(9, ItemTemplate.PAGE_INDICATOR.withLore(
+                StringUtils.formatColorCodes('&', "Pagina corrente: &f" + (pageNumber + 1) + " &7di &f" + totalPages)));
 
         if (pageNumber > 0) {
-            template.setAction(27, e -> e.getWhoClicked().openInventory(pages.get(pageNumber - 1)));
-            template.setItem(27, new ItemStackFactory(Material.ARROW)
-                    .setName(StringUtils.formatColorCodes('&', "&cPagina precedente"))
-                    .addLoreLine(StringUtils.formatColorCodes('&', String.format("Torna a pagina &e%d", pageNumber)))
-                    .get());
+            template.setAction(27, e -> e.getWhoClicked().openInventory(getPage(pageNumber - 1)));
+            template.setItem(27, ItemTemplate.PREVIOUS_PAGE.withLore(
+                    StringUtils.formatColorCodes('&', String.format("Torna a pagina &e%d", pageNumber))));
         }
 
         if (pageNumber < totalPages - 1) {
-            template.setAction(36, e -> e.getWhoClicked().openInventory(pages.get(pageNumber + 1)));
-            template.setItem(36, new ItemStackFactory(Material.SPECTRAL_ARROW)
-                            .setName(StringUtils.formatColorCodes('&', "&aPagina successiva"))
-                            .addLoreLine(StringUtils.formatColorCodes('&', String.format("Vai a pagina &e%d", pageNumber + 2)))
-                            .get());
+            template.setAction(36, e -> e.getWhoClicked().openInventory(getPage(pageNumber + 1)));
+            template.setItem(36, ItemTemplate.NEXT_PAGE.withLore(
+                    StringUtils.formatColorCodes('&', String.format("Vai a pagina &e%d", pageNumber + 2))));
         }
     }
 
     public Inventory get() {
-        return pages.isEmpty() ? createTemplate().get() : pages.getFirst();
+        return totalPages == 0 ? createTemplate().get() : getPage(0);
     }
 }
@@ -1,11 +1,13 @@
 package io.github.toniidev.toniifarmworlds.gui;
 
 import io.github.toniidev.toniifarmworlds.classes.Farm;
+import io.github.toniidev.toniifarmworlds.classes.FarmWorldManager;
 import io.github.toniidev.toniifarmworlds.classes.extended.HistoryAccess;
 import io.github.toniidev.toniifarmworlds.classes.HistoryAction;
 import io.github.toniidev.toniifarmworlds.commands.CreateFarm;
 import io.github.toniidev.toniifarmworlds.factories.InventoryFactory;
 import io.github.toniidev.toniifarmworlds.factories.ItemStackFactory;
+import io.github.toniidev.toniifarmworlds.factories.ItemTemplate;
 import io.github.toniidev.toniifarmworlds.factories.MultipleInventoryFactory;
 import io.github.toniidev.toniifarmworlds.link.ServerPlayer;
 import io.github.toniidev.toniifarmworlds.utils.InventoryUtils;
@@ -23,126 +25,113 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public class FarmManagement {
+    /// Formatter for the dates of the farm history
+    private static final DateTimeFormatter HISTORY_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM HH:mm");
+
     /**
-     * Generates the home inventory for managing the player's farms.
+     * Gets the home inventory for managing the player's farms.
      * This includes options like creating a farm, managing whitelists, and accessing other farms.
+     * The inventory is cached, and its options are updated when the player's farms change.
      *
      * @param player The player for whom the inventory is generated.
      * @param plugin The plugin instance for inventory management.
      * @return An Inventory instance representing the player's farm management home.
      */
     public static Inventory getHome(Player player, Plugin plugin) {
-        // Item for accessing other farms where the player is whitelisted
-        ItemStackFactory otherFarmsFactory = new ItemStackFactory(Material.PLAYER_HEAD)
-                .setName(StringUtils.formatColorCodes('&', "&9Altre fattorie"))
-                .addLoreLine("Accedi alle fattorie in cui sei stato")
-                .addLoreLine("invitato.")
-                .addBlankLoreLine()
-                .addLoreLine(StringUtils.formatColorCodes('&', "&fPuoi accedere a &b" + Farm.getFarmsPlayerIsWhitelistedIn(player)
-                        .size() + "&f fattorie."));
+        return MenuCache.get(player, MenuCache.MenuType.HOME,
+                // Initialize the base inventory for farm management
+                () -> new InventoryFactory(1, "Gestione terreni", plugin)
+                        .setClicksAllowed(false) // Disable clicks on the background
+                        .fill(ItemTemplate.FILLER.get()), // Fill the inventory with empty panes
+                base -> refreshHome(base, player, plugin));
+    }
+
+    /**
+     * Sets the options of the home inventory that depend on the player's farms.
+     *
+     * @param base   The factory of the home inventory.
+     * @param player The player for whom the inventory is generated.
+     * @param plugin The plugin instance for inventory management.
+     */
+    private static void refreshHome(InventoryFactory base, Player player, Plugin plugin) {
+        List<Farm> otherFarms = Farm.getFarmsPlayerIsWhitelistedIn(player);
 
-        // Initialize the base inventory for farm management
-        InventoryFactory base = new InventoryFactory(1, "Gestione terreni", plugin)
-                .setItem(8, otherFarmsFactory.get()) // Set other farms item at index 8
-                .setClicksAllowed(false) // Disable clicks on the background
-                .fill(new ItemStackFactory(Material.BLACK_STAINED_GLASS_PANE)
-                        .setName(" ").get()); // Fill the inventory with empty panes
+        // Item for accessing other farms where the player is whitelisted
+        String otherFarmsCount = StringUtils.formatColorCodes('&', "&fPuoi accedere a &b" + otherFarms.size() + "&f fattorie.");
 
         // Add action for opening other farms inventory if the player is whitelisted in any farm
-        if (!Farm.getFarmsPlayerIsWhitelistedIn(player).isEmpty()) {
-            otherFarmsFactory.addBlankLoreLine()
-                    .addLoreLine(StringUtils.formatColorCodes('&', "&eClicca per saperne di più!"));
-
-            base.setAction(8, e -> {
-                // Open the other farms home inventory when clicked
-                e.getWhoClicked().openInventory(FarmManagement.getOtherFarmsHome(player, plugin));
-            });
-        }
+        if (!otherFarms.isEmpty()) {
+            base.setItem(8, ItemTemplate.OTHER_FARMS.withLore(otherFarmsCount, " ",
+                            StringUtils.formatColorCodes('&', "&eClicca per saperne di più!")))
+                    .setAction(8, e -> {
+                        // Open the other farms home inventory when clicked
+                        e.getWhoClicked().openInventory(FarmManagement.getOtherFarmsHome(player, plugin));
+                    });
+        } else base.setItem(8, ItemTemplate.OTHER_FARMS.withLore(otherFarmsCount)).setAction(8, null);
 
         // Check if the player already has a farm
         if (Farm.reverse(player).isEmpty()) {
             // Item for creating a new farm if the player doesn't have one
-            base.setItem(4, new ItemStackFactory(Material.GREEN_STAINED_GLASS_PANE)
-                            .setName(StringUtils.formatColorCodes('&', "&aCrea fattoria"))
-                            .addLoreLine("Crea una tua fattoria. Il tuo posto tranquillo,")
-                            .addLoreLine("dove nessuno ti può disturbare. Solo tu e le tue")
-                            .addLoreLine("mucche.")
-                            .addBlankLoreLine()
-                            .addLoreLine(StringUtils.formatColorCodes('&', "&eClicca per creare una fattoria!"))
-                            .get())
-                    .setAction(4, e -> new CreateFarm().onCommand(player, Bukkit.getPluginCommand("creafattoria"), null, null));
+            base.setItem(4, ItemTemplate.CREATE_FARM.get())
+                    .setAction(4, e -> new CreateFarm().onCommand(player, Bukkit.getPluginCommand("creafattoria"), null, null))
+                    .setItem(2, ItemTemplate.FILLER.get())
+                    .setAction(2, null)
+                    .setItem(5, ItemTemplate.FILLER.get())
+                    .setAction(5, null);
         } else {
+            base.setItem(4, ItemTemplate.FILLER.get())
+                    .setAction(4, null);
+
             // Item for teleporting to the player's existing farm
-            base.setItem(2, new ItemStackFactory(Material.CYAN_STAINED_GLASS_PANE)
-                            .setName(StringUtils.formatColorCodes('&', "&bVai alla fattoria"))
-                            .addLoreLine("Vai nella tua fattoria")
-                            .addBlankLoreLine()
-                            .addLoreLine(StringUtils.formatColorCodes('&', "&eClicca per teletrasportarti!"))
-                            .get())
+            base.setItem(2, ItemTemplate.GO_TO_FARM.get())
                     .setAction(2, e -> {
                         // Teleport the player to their farm's spawn location
-                        System.out.println(
-                                Farm.reverse((Player) e.getWhoClicked()).get().getWorldName());
-                        e.getWhoClicked().teleport(Farm.reverse((Player) e.getWhoClicked()).get().getWorld().getSpawnLocation());
+                        Farm.reverse((Player) e.getWhoClicked())
+                                .ifPresent(farm -> e.getWhoClicked().teleport(FarmWorldManager.load(farm).getSpawnLocation()));
                     });
 
             // Item for managing the player's farm
-            base.setItem(5, new ItemStackFactory(Material.FILLED_MAP)
-                            .setName(StringUtils.formatColorCodes('&', "&6Gestisci fattoria"))
-                            .addLoreLine("Apri il menu di gestione della tua")
-                            .addLoreLine("fattoria.")
-                            .addBlankLoreLine()
-                            .addLoreLine(StringUtils.formatColorCodes('&', "&eClicca per aprire l'inventario!"))
-                            .get())
+            base.setItem(5, ItemTemplate.MANAGE_FARM.get())
                     .setAction(5, e -> {
                         // Open the farm management home inventory
                         e.getWhoClicked().openInventory(FarmManagement.getFarmManagementHome(player, plugin));
                     });
         }
-
-        // Return the final inventory for the player's farm management home
-        return base.get();
     }
 
 
     /**
-     * Generates an inventory for managing a player's farm.
+     * Gets an inventory for managing a player's farm. The inventory is cached,
+     * and its history option is updated when the farm history changes.
      *
      * @param player The player who owns the farm.
      * @param plugin The plugin instance for inventory management.
      * @return An Inventory instance for farm management with various options.
      */
     public static Inventory getFarmManagementHome(Player player, Plugin plugin) {
-        ItemStackFactory historyFactory = new ItemStackFactory(Material.FILLED_MAP)
-                .setName(StringUtils.formatColorCodes('&', "&bCronologia accessi"))
-                .addLoreLine("Ti hanno stuprato le mucche? Nessun problema!")
-                .addLoreLine("fai l'investigatore e vedi chi è stato, che gli")
-                .addLoreLine("facciamo i complimenti");
-
-        InventoryFactory factory = new InventoryFactory(1, "Gestione fattoria", plugin)
-                .setInventoryToShowOnClose(FarmManagement.getHome(player, plugin))
-                .setClicksAllowed(false)
-                .fill(new ItemStackFactory(Material.BLACK_STAINED_GLASS_PANE)
-                        .setName(" ").get())
-                .setItem(3, new ItemStackFactory(Material.FILLED_MAP)
-                        .setName(StringUtils.formatColorCodes('&', "&6Gestisci whitelist"))
-                        .addLoreLine("Gestisci i giocatori che possono entrare")
-                        .addLoreLine("nella tua fattoria. Attento, se sono")
-                        .addLoreLine("comunisti potrebbero proporre sistemi")
-                        .addLoreLine("economici di merda.")
-                        .addBlankLoreLine()
-                        .addLoreLine(StringUtils.formatColorCodes('&', "&eClicca per saperne di più!"))
-                        .get())
-                .setAction(3, e -> e.getWhoClicked().openInventory(getWhitelistHome(player, plugin)));
-
-        if (!Farm.reverse(player).get().getHistory().isEmpty()) {
-            historyFactory.addBlankLoreLine()
-                    .addLoreLine(StringUtils.formatColorCodes('&', "&eClicca per saperne di più!"));
-
-            factory.setAction(5, e -> e.getWhoClicked().openInventory(getFarmHistory(Farm.reverse((Player) e.getWhoClicked()).get(), plugin))).get();
-        }
+        return MenuCache.get(player, MenuCache.MenuType.FARM_MANAGEMENT,
+                () -> new InventoryFactory(1, "Gestione fattoria", plugin)
+                        .setInventoryToShowOnClose(() -> FarmManagement.getHome(player, plugin))
+                        .setClicksAllowed(false)
+                        .fill(ItemTemplate.FILLER.get())
+                        .setItem(3, ItemTemplate.MANAGE_WHITELIST.get())
+                        .setAction(3, e -> e.getWhoClicked().openInventory(getWhitelistHome(player, plugin))),
+                factory -> refreshFarmManagementHome(factory, player, plugin));
+    }
 
-        return factory.setItem(5, historyFactory.get()).get();
+    /**
+     * Sets the history option of the farm management inventory.
+     *
+     * @param factory The factory of the farm management inventory.
+     * @param player  The player who owns the farm.
+     * @param plugin  The plugin instance for inventory management.
+     */
+    private static void refreshFarmManagementHome(InventoryFactory factory, Player player, Plugin plugin) {
+        if (Farm.reverse(player).map(farm -> !farm.getHistory().isEmpty()).orElse(false)) {
+            factory.setItem(5, ItemTemplate.HISTORY.withLore(" ",
+                            StringUtils.formatColorCodes('&', "&eClicca per saperne di più!")))
+                    .setAction(5, e -> e.getWhoClicked().openInventory(getFarmHistory(Farm.reverse((Player) e.getWhoClicked()).get(), plugin)));
+        } else factory.setItem(5, ItemTemplate.HISTORY.get()).setAction(5, null);
     }
 
     /**
@@ -172,14 +161,14 @@ public class FarmManagement {
         // Create the inventory factory
         InventoryFactory base = new InventoryFactory(6, "Altre fattorie", plugin)
                 .setClicksAllowed(false)
-                .setInventoryToShowOnClose(FarmManagement.getHome(player, plugin))
+                .setInventoryToShowOnClose(() -> FarmManagement.getHome(player, plugin))
                 .setGlobalAction(e -> {
                     if (!InventoryUtils.checkPresence(e)) return;
 
                     // Teleport the player if the clicked item matches a farm
                     Farm clickedFarm = farmItemMap.get(e.getCurrentItem());
                     if (clickedFarm != null) {
-                        e.getWhoClicked().teleport(clickedFarm.getWorld().getSpawnLocation());
+                        e.getWhoClicked().teleport(FarmWorldManager.load(clickedFarm).getSpawnLocation());
                     }
                 });
 
@@ -195,82 +184,96 @@ public class FarmManagement {
      * @return An Inventory instance displaying the farm's access and exit history.
      */
     public static Inventory getFarmHistory(Farm farm, Plugin plugin) {
-        List<ItemStack> itemStacks = new ArrayList<>();
-
-        // Define a formatter for LocalDateTime
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM HH:mm");
-
-        // Loop through the farm's history and create corresponding item stacks
-        for (HistoryAction action : farm.getHistory()) {
-            String formattedDate = action.getDate().format(formatter);
-
-            // Determine the item type and details based on the action type
-            itemStacks.add(new ItemStackFactory(
-                    action instanceof HistoryAccess ? Material.GREEN_STAINED_GLASS_PANE : Material.RED_STAINED_GLASS_PANE)
-                    .setName(StringUtils.formatColorCodes(
-                            '&', (action instanceof HistoryAccess ? "&aAccesso" : "&cUscita")))
-                    .addLoreLine(StringUtils.formatColorCodes('&', "&8Cronologia"))
-                    .addBlankLoreLine()
-                    .addLoreLine(StringUtils.formatColorCodes('&', "&fGiocatore: &6" + action.getName()))
-                    .addLoreLine(StringUtils.formatColorCodes(
-                            '&', "&fData: &6" + formattedDate))
-                    .get());
-        }
+        // The history only grows, so the actions up to the current size keep their index while the view is open
+        List<HistoryAction> history = farm.getHistory();
+        int size = history.size();
 
         // Create a base inventory for the history with a fallback inventory for when it is closed
         InventoryFactory factory = new InventoryFactory(6, "Cronologia", plugin)
                 .setClicksAllowed(false)
-                .setInventoryToShowOnClose(getFarmManagementHome(farm.getOwnerAsPlayer(), plugin));
+                .setInventoryToShowOnClose(() -> getFarmManagementHome(farm.getOwnerAsPlayer(), plugin));
 
-        // Generate and return the inventory using the created item stacks
-        return new MultipleInventoryFactory(itemStacks, factory).get();
+        // Generate and return the inventory, building only the item stacks of the pages that get opened
+        return new MultipleInventoryFactory(size, i -> getHistoryItem(history.get(i)), factory).get();
+    }
+
+    /**
+     * Builds the item that represents an action of a farm history.
+     *
+     * @param action The action to represent.
+     * @return An ItemStack describing who performed the action, and when.
+     */
+    private static ItemStack getHistoryItem(HistoryAction action) {
+        String formattedDate = action.getDate().format(HISTORY_DATE_FORMATTER);
+
+        // Determine the item type and details based on the action type
+        return new ItemStackFactory(
+                action instanceof HistoryAccess ? Material.GREEN_STAINED_GLASS_PANE : Material.RED_STAINED_GLASS_PANE)
+                .setName(StringUtils.formatColorCodes(
+                        '&', (action instanceof HistoryAccess ? "&aAccesso" : "&cUscita")))
+                .addLoreLine(StringUtils.formatColorCodes('&', "&8Cronologia"))
+                .addBlankLoreLine()
+                .addLoreLine(StringUtils.formatColorCodes('&', "&fGiocatore: &6" + action.getName()))
+                .addLoreLine(StringUtils.formatColorCodes(
+                        '&', "&fData: &6" + formattedDate))
+                .get();
     }
 
     public static Inventory getWhitelistHome(Player player, Plugin plugin){
-        Farm farm = Farm.reverse(player).get();
+        return MenuCache.get(player, MenuCache.MenuType.WHITELIST,
+                () -> new InventoryFactory(1, "Whitelist", plugin)
+                        .setClicksAllowed(false)
+                        .setInventoryToShowOnClose(() -> getFarmManagementHome(player, plugin))
+                        .fill(ItemTemplate.FILLER.get()),
+                base -> refreshWhitelistHome(base, player, plugin));
+    }
 
-        InventoryFactory base = new InventoryFactory(1, "Whitelist", plugin)
-                .setClicksAllowed(false)
-                .setInventoryToShowOnClose(getFarmManagementHome(player, plugin))
-                .fill(new ItemStackFactory(Material.BLACK_STAINED_GLASS_PANE)
-                        .setName(" ").get());
-
-        ItemStackFactory manageFactory = new ItemStackFactory(Material.FILLED_MAP)
-                .setName(StringUtils.formatColorCodes('&', "&6Gestisci giocatori whitelistati"))
-                .addLoreLine("Visualizza i giocatori attualmente whitelistati")
-                .addLoreLine("e, se vuoi, rimuovili dalla whitelist")
-                .addBlankLoreLine()
-                .addLoreLine(StringUtils.formatColorCodes('&', "&fCi sono &b" + farm.getWhitelist().size() + "&f giocatori attualmente"))
-                .addLoreLine(StringUtils.formatColorCodes('&', "&fwhitelistati nella tua fattoria"));
+    private static void refreshWhitelistHome(InventoryFactory base, Player player, Plugin plugin){
+        List<UUID> whitelist = Farm.reverse(player).map(Farm::getWhitelist).orElse(List.of());
 
-        if(!farm.getWhitelist().isEmpty()){
-            manageFactory.addBlankLoreLine()
-                    .addLoreLine(StringUtils.formatColorCodes('&', "&eClicca per gestire!"));
+        List<String> manageLore = new ArrayList<>(List.of(
+                StringUtils.formatColorCodes('&', "&fCi sono &b" + whitelist.size() + "&f giocatori attualmente"),
+                StringUtils.formatColorCodes('&', "&fwhitelistati nella tua fattoria")));
+
+        if(!whitelist.isEmpty()){
+            manageLore.add(" ");
+            manageLore.add(StringUtils.formatColorCodes('&', "&eClicca per gestire!"));
 
             base.setAction(3, e -> e.getWhoClicked().openInventory(getManageWhitelist(player, plugin)));
         }
+        else base.setAction(3, null);
 
-        base.setItem(3, manageFactory.get());
+        base.setItem(3, ItemTemplate.MANAGE_WHITELISTED.withLore(manageLore.toArray(String[]::new)));
 
-        ItemStackFactory addFactory = new ItemStackFactory(Material.FILLED_MAP)
-                .setName(StringUtils.formatColorCodes('&', "&9Aggiungi giocatore alla whitelist"))
-                .addLoreLine("Scegli tra la lista dei giocatori attualmente")
-                .addLoreLine("online qualcuno da aggiungere alla whitelist")
-                .addBlankLoreLine()
-                .addLoreLine(StringUtils.formatColorCodes('&', "&fCi sono &b" + (Bukkit.getOnlinePlayers().size() - 1) + "&f giocatori attualmente online nel server"))
-                .addLoreLine(StringUtils.formatColorCodes('&', "&foltre a te. In questa lista non compariranno"))
-                .addLoreLine(StringUtils.formatColorCodes('&', "&fi giocatori già whitelistati."));
+        List<String> addLore = new ArrayList<>(List.of(
+                StringUtils.formatColorCodes('&', "&fCi sono &b" + (Bukkit.getOnlinePlayers().size() - 1) + "&f giocatori attualmente online nel server"),
+                StringUtils.formatColorCodes('&', "&foltre a te. In questa lista non compariranno"),
+                StringUtils.formatColorCodes('&', "&fi giocatori già whitelistati.")));
 
         if(!(Bukkit.getOnlinePlayers().size() - 1 == 0)){
-            addFactory.addBlankLoreLine()
-                    .addLoreLine(StringUtils.formatColorCodes('&', "&eClicca per visualizzare!"));
+            addLore.add(" ");
+            addLore.add(StringUtils.formatColorCodes('&', "&eClicca per visualizzare!"));
 
             base.setAction(5, e -> e.getWhoClicked().openInventory(getAddPlayerToWhitelist(player, plugin)));
         }
+        else base.setAction(5, null);
 
-        base.setItem(5, addFactory.get());
+        base.setItem(5, ItemTemplate.ADD_TO_WHITELIST.withLore(addLore.toArray(String[]::new)));
+    }
+
+    /**
+     * Gets the name to show for a player. Only the players who are online have their ServerPlayer
+     * in memory, so the name of the others is taken from the server's player data
+     *
+     * @param uuid The UUID of the player
+     * @return The display name of the player, or their last known name if they are offline
+     */
+    private static String getPlayerName(UUID uuid) {
+        ServerPlayer serverPlayer = ServerPlayer.getInstance(uuid);
+        if (serverPlayer != null) return serverPlayer.getDisplayName();
 
-        return base.get();
+        String name = Bukkit.getOfflinePlayer(uuid).getName();
+        return name != null ? name : uuid.toString();
     }
 
     public static Inventory getManageWhitelist(Player player, Plugin plugin){
@@ -280,7 +283,7 @@ public class FarmManagement {
                 .filter(farm::isWhitelisted)
                 .collect(HashMap::new, (map, uuid) -> map.put(
                         new ItemStackFactory(Material.PLAYER_HEAD)
-                                .setName(StringUtils.formatColorCodes('&', "&6" + ServerPlayer.getInstance(uuid).getDisplayName()))
+                                .setName(StringUtils.formatColorCodes('&', "&6" + getPlayerName(uuid)))
                                 .addLoreLine("Questo giocatore è whitelistato. Può entrare nella")
                                 .addLoreLine("tua fattoria in qualsiasi momento.")
                                 .addBlankLoreLine()
@@ -299,7 +302,7 @@ public class FarmManagement {
                     if(!farm.isWhitelisted(playerToRemove)) return;
 
                     farm.removeFromWhitelist(playerToRemove);
-                    player.sendMessage(StringUtils.formatColorCodes('&', "&e[Fattoria] &aWhitelist: &f" + ServerPlayer.getInstance(playerToRemove).getDisplayName() + "&7 è stato rimosso dalla whitelist."));
+                    player.sendMessage(StringUtils.formatColorCodes('&', "&e[Fattoria] &aWhitelist: &f" + getPlayerName(playerToRemove) + "&7 è stato rimosso dalla whitelist."));
                 });
 
         return new MultipleInventoryFactory(items.keySet().stream().toList(), factory)
@@ -326,7 +329,7 @@ public class FarmManagement {
 
         InventoryFactory factory = new InventoryFactory(6, "Giocatori online", plugin)
                 .setClicksAllowed(false)
-                .setInventoryToShowOnClose(getWhitelistHome(player, plugin))
+                .setInventoryToShowOnClose(() -> getWhitelistHome(player, plugin))
                 .setGlobalAction(e -> {
                     if(!InventoryUtils.checkPresence(e)) return;
                     if(!items.containsKey(e.getCurrentItem())) return;
@@ -0,0 +1,128 @@
+package io.github.toniidev.toniifarmworlds.gui;
+
+import io.github.toniidev.toniifarmworlds.factories.InventoryFactory;
+import io.github.toniidev.toniifarmworlds.utils.InitializeUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.Inventory;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the menus every online player has opened. A menu is built the first time it gets opened,
+ * and then the same Inventory is shown every time it is opened again. When something a menu shows
+ * changes, only the slots that depend on it are updated in place, even while the player is viewing it.
+ * Menus must be used from the main thread.
+ */
+public class MenuCache implements Listener {
+    /**
+     * The menus that can be cached. Paged menus are not cached, since their pages are built on demand
+     */
+    public enum MenuType {
+        HOME,
+        FARM_MANAGEMENT,
+        WHITELIST
+    }
+
+    /**
+     * A cached menu: the factory of its Inventory and the function that updates the slots
+     * which depend on the state of the farms
+     */
+    private record Menu(InventoryFactory factory, Consumer<InventoryFactory> refresher) {
+    }
+
+    private static final Map<UUID, Map<MenuType, Menu>> menus = new HashMap<>();
+
+    /**
+     * Gets the cached menu of the specified type for a player, building it if it isn't cached
+     *
+     * @param player    The player who is going to view the menu
+     * @param type      The type of the menu
+     * @param builder   Builds the parts of the menu that never change
+     * @param refresher Sets the slots of the menu that change together with the state of the farms
+     * @return The Inventory of the menu
+     */
+    public static Inventory get(Player player, MenuType type, Supplier<InventoryFactory> builder,
+                                Consumer<InventoryFactory> refresher) {
+        Map<MenuType, Menu> playerMenus = menus.computeIfAbsent(player.getUniqueId(), x -> new EnumMap<>(MenuType.class));
+
+        Menu menu = playerMenus.get(type);
+        if (menu == null) {
+            InventoryFactory factory = builder.get();
+            refresher.accept(factory);
+
+            menu = new Menu(factory, refresher);
+            playerMenus.put(type, menu);
+        }
+
+        return menu.factory().get();
+    }
+
+    /**
+     * Updates the changing slots of the menu of the specified type of a player, if it is cached
+     *
+     * @param player The UUID of the player
+     * @param type   The type of the menu
+     */
+    public static void refresh(UUID player, MenuType type) {
+        Map<MenuType, Menu> playerMenus = menus.get(player);
+        if (playerMenus == null) return;
+
+        Menu menu = playerMenus.get(type);
+        if (menu != null) menu.refresher().accept(menu.factory());
+    }
+
+    /**
+     * Updates the changing slots of every cached menu of a player
+     *
+     * @param player The UUID of the player
+     */
+    public static void refresh(UUID player) {
+        Map<MenuType, Menu> playerMenus = menus.get(player);
+        if (playerMenus == null) return;
+
+        for (Menu menu : playerMenus.values()) {
+            menu.refresher().accept(menu.factory());
+        }
+    }
+
+    /**
+     * Updates the changing slots of the cached menus of the specified type of every player
+     *
+     * @param type The type of the menus
+     */
+    public static void refreshAll(MenuType type) {
+        for (UUID player : menus.keySet()) {
+            refresh(player, type);
+        }
+    }
+
+    /**
+     * Handling PlayerJoinEvent to update the number of online players that the whitelist menus show
+     */
+    @EventHandler
+    public void onJoin(PlayerJoinEvent e) {
+        refreshAll(MenuType.WHITELIST);
+    }
+
+    /**
+     * Handling PlayerQuitEvent to drop the menus of the player who left, and to update the number
+     * of online players that the whitelist menus show
+     */
+    @EventHandler
+    public void onQuit(PlayerQuitEvent e) {
+        menus.remove(e.getPlayer().getUniqueId());
+
+        /// The player who is leaving is still counted as online until the event is over
+        Bukkit.getScheduler().runTask(InitializeUtils.mainInstance, () -> refreshAll(MenuType.WHITELIST));
+    }
+}
@@ -1,16 +1,74 @@
 package io.github.toniidev.toniifarmworlds.link;
 
+import io.github.toniidev.toniifarmworlds.utils.InitializeUtils;
+import io.github.toniidev.toniifarmworlds.utils.InventorySnapshot;
 import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 public abstract class GameTask {
+    /// Key under which the icon of a task stores the id of the task
+    private static NamespacedKey idKey;
+
+    /// Identifies the task while the server is running, so that its icon can be resolved back to it
+    private final UUID id = UUID.randomUUID();
+
+    /**
+     * Default getter for this class
+     *
+     * @return The id of this task, which is also stored in the PersistentDataContainer of its icon
+     */
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * @return The key under which the icon of a task stores the id of the task
+     */
+    protected static NamespacedKey getIdKey() {
+        if (idKey == null) idKey = new NamespacedKey(InitializeUtils.mainInstance, "task_id");
+        return idKey;
+    }
+
+    /**
+     * Reads the id of the task represented by an icon
+     *
+     * @param icon The icon of a task
+     * @return The id of the task, or null if the ItemStack is not the icon of a task
+     */
+    @Nullable
+    public static UUID getId(@Nullable ItemStack icon) {
+        if (icon == null || !icon.hasItemMeta()) return null;
+
+        ItemMeta meta = icon.getItemMeta();
+        assert meta != null;
+        String id = meta.getPersistentDataContainer().get(getIdKey(), PersistentDataType.STRING);
+        return id == null ? null : UUID.fromString(id);
+    }
+
     public abstract boolean canComplete(Player player);
+    public abstract boolean canComplete(InventorySnapshot snapshot);
     public abstract void complete(Player player);
-    public abstract ItemStack getIcon(Player player);
+    public abstract ItemStack getIcon(InventorySnapshot snapshot);
+
+    /**
+     * Gets the task's icon, checking the Player's inventory once. When rendering more icons
+     * for the same Player, a single InventorySnapshot should be shared through getIcon(InventorySnapshot)
+     *
+     * @param player The player viewing the task.
+     * @return An ItemStack representing the task.
+     */
+    public ItemStack getIcon(Player player) {
+        return getIcon(InventorySnapshot.of(player));
+    }
     public abstract String toString();
     public static GameTask fromString(String string){
         String[] singleMaxiArgs = string.split("@");
@@ -0,0 +1,204 @@
+package io.github.toniidev.toniifarmworlds.link;
+
+import org.bukkit.Material;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of a list of GameTasks, stored as a single Base64 string.
+ * The data starts with a format version, followed by a table of the distinct strings the tasks use
+ * (material keys, request names and client names), so that each of them is written once and
+ * the tasks only refer to it by index. Numbers are written as varints. Unlike the delimited format of
+ * GameTask#toString, names can contain any character.
+ */
+public class GameTaskCodec {
+    /// The version of the format written by encode. decode refuses data written by newer versions
+    private static final int VERSION = 1;
+
+    private static final int SINGLE_TASK = 0;
+    private static final int MULTIPLE_TASK = 1;
+
+    /**
+     * Encodes a list of tasks
+     *
+     * @param tasks The tasks to encode
+     * @return The Base64 encoding of the tasks
+     */
+    public static String encode(List<? extends GameTask> tasks) {
+        if (tasks == null) {
+            throw new IllegalArgumentException("Tasks cannot be null");
+        }
+
+        // Collect the string table first, in order of first use
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (GameTask task : tasks) {
+            if (task instanceof SingleTask singleTask) {
+                intern(strings, singleTask);
+            } else if (task instanceof MultipleTask multipleTask) {
+                strings.putIfAbsent(multipleTask.getClient(), strings.size());
+                for (SingleTask singleTask : multipleTask.getTasks()) {
+                    intern(strings, singleTask);
+                }
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeVarInt(out, VERSION);
+
+            writeVarInt(out, strings.size());
+            for (String string : strings.keySet()) {
+                out.writeUTF(string);
+            }
+
+            writeVarInt(out, tasks.size());
+            for (GameTask task : tasks) {
+                if (task instanceof SingleTask singleTask) {
+                    out.writeByte(SINGLE_TASK);
+                    writeSingleTask(out, singleTask, strings);
+                } else if (task instanceof MultipleTask multipleTask) {
+                    out.writeByte(MULTIPLE_TASK);
+                    writeVarInt(out, strings.get(multipleTask.getClient()));
+                    writeVarInt(out, multipleTask.getTasks().size());
+                    for (SingleTask singleTask : multipleTask.getTasks()) {
+                        writeSingleTask(out, singleTask, strings);
+                    }
+                } else {
+                    throw new IllegalArgumentException("Unsupported task type: " + task.getClass().getName());
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode the tasks", e);
+        }
+
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Decodes a list of tasks encoded by encode
+     *
+     * @param data The Base64 encoding of the tasks
+     * @return The decoded tasks, in the order they were encoded
+     */
+    public static List<GameTask> decode(String data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data cannot be null");
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(data)))) {
+            int version = readVarInt(in);
+            if (version < 1 || version > VERSION) {
+                throw new IllegalArgumentException("Unsupported task format version: " + version);
+            }
+
+            String[] strings = new String[readCount(in)];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+
+            int size = readCount(in);
+            List<GameTask> tasks = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int type = in.readUnsignedByte();
+                switch (type) {
+                    case SINGLE_TASK -> tasks.add(readSingleTask(in, strings));
+                    case MULTIPLE_TASK -> {
+                        String client = readString(in, strings);
+                        int count = readCount(in);
+                        List<SingleTask> singleTasks = new ArrayList<>(count);
+                        for (int j = 0; j < count; j++) {
+                            singleTasks.add(readSingleTask(in, strings));
+                        }
+                        tasks.add(new MultipleTask(singleTasks, client));
+                    }
+                    default -> throw new IllegalArgumentException("Unknown task type: " + type);
+                }
+            }
+            return tasks;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode the tasks", e);
+        }
+    }
+
+    private static void intern(Map<String, Integer> strings, SingleTask task) {
+        strings.putIfAbsent(task.getMaterial().getKey().toString(), strings.size());
+        strings.putIfAbsent(task.getRequestName(), strings.size());
+        strings.putIfAbsent(task.getClientName(), strings.size());
+    }
+
+    private static void writeSingleTask(DataOutputStream out, SingleTask task, Map<String, Integer> strings) throws IOException {
+        writeVarInt(out, strings.get(task.getMaterial().getKey().toString()));
+        writeVarInt(out, task.getAmount());
+        writeVarInt(out, strings.get(task.getRequestName()));
+        // Rewards are always paid rounded to a whole number, so the rounded reward is all that is needed
+        writeVarLong(out, Math.round(task.getReward()));
+        writeVarInt(out, strings.get(task.getClientName()));
+    }
+
+    private static SingleTask readSingleTask(DataInputStream in, String[] strings) throws IOException {
+        String materialKey = readString(in, strings);
+        Material material = Material.matchMaterial(materialKey);
+        if (material == null) {
+            throw new IllegalArgumentException("Unknown material: " + materialKey);
+        }
+
+        int amount = readVarInt(in);
+        String requestName = readString(in, strings);
+        double reward = readVarLong(in);
+        String clientName = readString(in, strings);
+        return new SingleTask(material, requestName, amount, reward, clientName);
+    }
+
+    private static String readString(DataInputStream in, String[] strings) throws IOException {
+        int index = readVarInt(in);
+        if (index >= strings.length) throw new IOException("String index out of bounds: " + index);
+        return strings[index];
+    }
+
+    // Every entry takes at least a byte, so a count larger than the bytes left can only come from corrupted data
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = readVarInt(in);
+        if (count > in.available()) throw new IOException("Malformed count: " + count);
+        return count;
+    }
+
+    // Ints are indices, counts and amounts, which are never negative
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        if (value < 0) throw new IllegalArgumentException("Value cannot be negative: " + value);
+        writeVarLong(out, value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) throw new IOException("Malformed varint");
+        return (int) value;
+    }
+
+    // Write a long in 7-bit groups, the least significant first. Small non-negative values take a single byte
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -1,10 +1,12 @@
 package io.github.toniidev.toniifarmworlds.link;
 
 import io.github.toniidev.toniifarmworlds.factories.ItemStackFactory;
+import io.github.toniidev.toniifarmworlds.utils.InventorySnapshot;
 import io.github.toniidev.toniifarmworlds.utils.StringUtils;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataType;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -84,7 +86,12 @@ public class MultipleTask extends GameTask {
 
     @Override
     public boolean canComplete(Player player) {
-        return this.getTasks().stream().allMatch(task -> task.canComplete(player));
+        return canComplete(InventorySnapshot.of(player));
+    }
+
+    @Override
+    public boolean canComplete(InventorySnapshot snapshot) {
+        return this.getTasks().stream().allMatch(task -> task.canComplete(snapshot));
     }
 
     @Override
@@ -112,7 +119,9 @@ public class MultipleTask extends GameTask {
 
 
     @Override
-    public ItemStack getIcon(Player player) {
+    public ItemStack getIcon(InventorySnapshot snapshot) {
+        boolean canComplete = true;
+
         ItemStackFactory factory = new ItemStackFactory(Material.FILLED_MAP)
                 .setName(StringUtils.formatColorCodes('&', "&aConsegna"))
                 .addLoreLine(StringUtils.formatColorCodes('&', "&8" + this.getClient()))
@@ -121,14 +130,18 @@ public class MultipleTask extends GameTask {
                 .addBlankLoreLine();
 
         for (SingleTask task : this.getTasks()) {
+            boolean canCompleteTask = task.canComplete(snapshot);
+            canComplete &= canCompleteTask;
+
             factory.addLoreLine(StringUtils.formatColorCodes('&', "&e" + task.getAmount() + "x &a" + task.getRequestName() + " " +
-                    (task.canComplete(player) ? "&a✔" : "&c❌")));
+                    (canCompleteTask ? "&a✔" : "&c❌")));
         }
 
         factory.addBlankLoreLine()
                 .addLoreLine(StringUtils.formatColorCodes('&', "&fRicompensa: &6" + this.getReward() + "$"))
                 .addBlankLoreLine()
-                .addLoreLine(StringUtils.formatColorCodes('&', (this.canComplete(player) ? "&eClicca per accettare!" : "&cNon hai abbastanza oggetti!")));
+                .addLoreLine(StringUtils.formatColorCodes('&', (canComplete ? "&eClicca per accettare!" : "&cNon hai abbastanza oggetti!")))
+                .setPersistentData(getIdKey(), PersistentDataType.STRING, this.getId().toString());
 
         return factory.get();
     }
@@ -5,25 +5,24 @@ import io.github.toniidev.toniifarmworlds.database.DatabaseManager;
 import io.github.toniidev.toniifarmworlds.factories.InventoryFactory;
 import io.github.toniidev.toniifarmworlds.factories.MultipleInventoryFactory;
 import io.github.toniidev.toniifarmworlds.utils.InitializeUtils;
+import io.github.toniidev.toniifarmworlds.utils.InventorySnapshot;
 import io.github.toniidev.toniifarmworlds.utils.InventoryUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.scheduler.BukkitRunnable;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Stream;
+import java.util.*;
+import java.util.function.BooleanSupplier;
 
 public class ServerPlayer extends DatabaseItem<ServerPlayer> {
-    private static final List<ServerPlayer> players = new ArrayList<>();
+    /// How many generations a missed task gets when catching up, before giving up because of duplicates
+    private static final int CATCH_UP_TRIES_PER_TASK = 4;
 
     private UUID playerId;
     private Plugin plugin;
@@ -37,6 +36,12 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
 
     private double money;
 
+    /// When the tasks were last generated, in epoch milliseconds. 0 if it is unknown
+    private long lastTaskGeneration;
+
+    /// Index of the tasks of both lists by their id, to resolve a clicked icon with one lookup
+    private final Map<UUID, GameTask> tasksById = new HashMap<>();
+
     /**
      * Constructs a new ServerPlayer instance.
      *
@@ -44,12 +49,11 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
      * @param plugin The main plugin instance.
      */
     public ServerPlayer(Player player, Plugin plugin) {
-        super(plugin, "players", ServerPlayer.getPlayers());
+        super(plugin, "players");
         this.playerId = player.getUniqueId();
         this.plugin = plugin;
         this.displayName = player.getDisplayName();
-
-        startTaskLoops();
+        this.lastTaskGeneration = System.currentTimeMillis();
     }
 
     public UUID getPlayerId() {
@@ -65,7 +69,18 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
     }
 
     public ServerPlayer(){
-        super(InitializeUtils.mainInstance, null, null);
+        super(InitializeUtils.mainInstance, "players");
+        this.plugin = InitializeUtils.mainInstance;
+    }
+
+    /**
+     * Gets the key of the row that stores this player: the player's UUID.
+     *
+     * @return The player's UUID as a string.
+     */
+    @Override
+    public String getDatabaseKey() {
+        return this.playerId.toString();
     }
 
     /**
@@ -91,63 +106,102 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
     }
 
     /**
-     * Starts the task generation loops for single and multiple tasks.
+     * Adds a new SingleTask, if the player has fewer single tasks than the maximum allowed.
+     * It is called by the TaskScheduler while the player is online.
+     */
+    boolean generateSingleTask() {
+        return generateTask(singleTasks, maxSingleTasks, SingleTask::new);
+    }
+
+    /**
+     * Adds a new MultipleTask, if the player has fewer multiple tasks than the maximum allowed.
+     * It is called by the TaskScheduler while the player is online.
      */
-    private void startTaskLoops() {
-        startTaskLoop(singleTasks, maxSingleTasks, SingleTask::new);
-        startTaskLoop(multipleTasks, maxMultipleTasks, MultipleTask::new);
+    boolean generateMultipleTask() {
+        return generateTask(multipleTasks, maxMultipleTasks, MultipleTask::new);
     }
 
     /**
-     * Starts a repeating task loop that adds tasks to the provided task list, ensuring that no duplicate tasks
-     * (based on certain criteria) are added. The loop will stop once the task list reaches the specified maximum size.
+     * Generates, in one step, the tasks that would have been generated while the player was offline.
+     * Online, every kind of task gets a generation attempt on average every TaskScheduler.AVERAGE_DELAY_MILLIS,
+     * so the player gets as many tasks as attempts fit in the time since the last generation, up to the free
+     * slots. If that time is unknown, no task is generated.
      *
-     * @param taskList The list of tasks to add new tasks to.
+     * @param now The current time, in epoch milliseconds.
+     */
+    void catchUpTasks(long now) {
+        if (lastTaskGeneration > 0 && now > lastTaskGeneration) {
+            long attempts = (now - lastTaskGeneration) / TaskScheduler.AVERAGE_DELAY_MILLIS;
+
+            addMissedTasks(this::generateSingleTask, (int) Math.min(attempts, Math.max(0, maxSingleTasks - singleTasks.size())));
+            addMissedTasks(this::generateMultipleTask, (int) Math.min(attempts, Math.max(0, maxMultipleTasks - multipleTasks.size())));
+        }
+
+        this.lastTaskGeneration = now;
+    }
+
+    /**
+     * Adds the specified number of tasks. Generated tasks that duplicate existing ones are thrown away,
+     * so the work is bounded by CATCH_UP_TRIES_PER_TASK tries per task: if the generator keeps producing
+     * duplicates, fewer tasks are added.
+     *
+     * @param generator Generates a task, returning true if it has been added.
+     * @param count The number of tasks to add.
+     */
+    private static void addMissedTasks(BooleanSupplier generator, int count) {
+        int added = 0;
+        for (int tries = 0; added < count && tries < count * CATCH_UP_TRIES_PER_TASK; tries++) {
+            if (generator.getAsBoolean()) added++;
+        }
+    }
+
+    /**
+     * Adds a task to the provided task list, ensuring that no duplicate tasks (based on certain criteria)
+     * are added. No task is added if the task list has already reached the specified maximum size.
+     *
+     * @param taskList The list of tasks to add the new task to.
      * @param maxTasks The maximum number of tasks allowed in the list.
      * @param taskFactory A factory responsible for creating new tasks of type T.
      * @param <T> The type of task being added (either SingleTask or MultipleTask).
+     * @return true if a task has been added.
      */
-    private <T> void startTaskLoop(List<T> taskList, int maxTasks, TaskFactory<T> taskFactory) {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                // Only proceed if the task list has fewer tasks than the maximum allowed
-                if (taskList.size() < maxTasks) {
-                    T newTask = taskFactory.create(); // Create a new task using the factory
-                    boolean isUnique = true; // Flag to check if the task is unique
-
-                    // Check if the task is a SingleTask and validate uniqueness
-                    if (newTask instanceof SingleTask) {
-                        for (SingleTask task : getSingleTasks()) {
-                            // Check if a task with the same material and client name exists
-                            if (task.getMaterial().equals(((SingleTask) newTask).getMaterial())
-                                    && task.getClientName().equals(((SingleTask) newTask).getClientName())) {
-                                isUnique = false;
-                                break;
-                            }
-                        }
-                    }
-
-                    // Check if the task is a MultipleTask and validate uniqueness
-                    if (newTask instanceof MultipleTask) {
-                        for (MultipleTask task : getMultipleTasks()) {
-                            // Check if a task with the same tasks and client exists
-                            if (task.getTasks().equals(((MultipleTask) newTask).getTasks())
-                                    && task.getClient().equals(((MultipleTask) newTask).getClient())) {
-                                isUnique = false;
-                                break;
-                            }
-                        }
-                    }
-
-                    // If the task is unique, add it to the task list
-                    if (isUnique) {
-                        taskList.add(newTask);
-                        save();
-                    }
+    private <T extends GameTask> boolean generateTask(List<T> taskList, int maxTasks, TaskFactory<T> taskFactory) {
+        // Only proceed if the task list has fewer tasks than the maximum allowed
+        if (taskList.size() >= maxTasks) return false;
+
+        T newTask = taskFactory.create(); // Create a new task using the factory
+        boolean isUnique = true; // Flag to check if the task is unique
+
+        // Check if the task is a SingleTask and validate uniqueness
+        if (newTask instanceof SingleTask) {
+            for (SingleTask task : getSingleTasks()) {
+                // Check if a task with the same material and client name exists
+                if (task.getMaterial().equals(((SingleTask) newTask).getMaterial())
+                        && task.getClientName().equals(((SingleTask) newTask).getClientName())) {
+                    isUnique = false;
+                    break;
                 }
             }
-        }.runTaskTimer(plugin, getRandomDelay(), getRandomDelay());
+        }
+
+        // Check if the task is a MultipleTask and validate uniqueness
+        if (newTask instanceof MultipleTask) {
+            for (MultipleTask task : getMultipleTasks()) {
+                // Check if a task with the same tasks and client exists
+                if (task.getTasks().equals(((MultipleTask) newTask).getTasks())
+                        && task.getClient().equals(((MultipleTask) newTask).getClient())) {
+                    isUnique = false;
+                    break;
+                }
+            }
+        }
+
+        // If the task is unique, add it to the task list
+        if (isUnique) {
+            addTask(newTask);
+            save();
+        }
+        return isUnique;
     }
 
     /**
@@ -160,10 +214,10 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
     }
 
     /**
-     * @return The global list of all ServerPlayer instances.
+     * @return Every ServerPlayer instance, online or not.
      */
     public static List<ServerPlayer> getPlayers() {
-        return players;
+        return ServerPlayerRegistry.getAll();
     }
 
     /**
@@ -172,59 +226,63 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
      * @param player The Bukkit Player.
      * @return The ServerPlayer instance, or null if not found.
      */
+    @Nullable
     public static ServerPlayer getInstance(Player player) {
-        return players.stream()
-                .filter(serverPlayer -> serverPlayer.getPlayer() != null && serverPlayer.getPlayerId().equals(player.getUniqueId()))
-                .findFirst()
-                .orElse(null);
+        return ServerPlayerRegistry.get(player.getUniqueId());
     }
 
+    /**
+     * Retrieves the ServerPlayer instance for a given UUID, whether the player is online or not.
+     *
+     * @param uuid The UUID of the player.
+     * @return The ServerPlayer instance, or null if not found.
+     */
+    @Nullable
     public static ServerPlayer getInstance(UUID uuid){
-        return players.stream()
-                .filter(serverPlayer -> serverPlayer.getPlayer() != null && serverPlayer.getPlayerId().equals(uuid))
-                .findFirst()
-                .orElse(null);
+        return ServerPlayerRegistry.get(uuid);
     }
 
     /**
-     * Registers a new ServerPlayer instance if not already present.
+     * Registers a new ServerPlayer instance if not already present. The data of the player is taken,
+     * in order, from the registry, from the data read when the player was logging in and from the
+     * database; a new ServerPlayer is created only if the player has never joined before.
      *
      * @param player The Bukkit Player.
      * @param plugin The main plugin instance.
      * @return The existing or newly created ServerPlayer.
      */
     public static ServerPlayer registerPlayer(Player player, Plugin plugin) {
-        return players.stream()
-                .filter(serverPlayer -> serverPlayer.getPlayer() != null && serverPlayer.getPlayer().equals(player))
-                .findFirst()
-                .orElseGet(() -> {
-                    ServerPlayer newPlayer = new ServerPlayer(player, plugin);
-                    players.add(newPlayer);
-                    return newPlayer;
-                });
+        ServerPlayer serverPlayer = ServerPlayerRegistry.get(player.getUniqueId());
+        if (serverPlayer == null) serverPlayer = ServerPlayerRegistry.takePreloaded(player.getUniqueId());
+        if (serverPlayer == null) serverPlayer = load(plugin, player.getUniqueId());
+        if (serverPlayer == null) serverPlayer = new ServerPlayer(player, plugin);
+
+        // Registering an online Player puts it in the online tier
+        ServerPlayerRegistry.setOnline(serverPlayer);
+        return serverPlayer;
     }
 
     /**
-     * Removes a ServerPlayer instance from the global list.
+     * Removes a ServerPlayer instance from the registry.
      *
      * @param player The Bukkit Player to remove.
      */
     public static void removePlayer(Player player) {
-        players.removeIf(serverPlayer -> serverPlayer.getPlayer() != null && serverPlayer.getPlayer().equals(player));
+        ServerPlayerRegistry.unregister(player.getUniqueId());
     }
 
     /**
-     * @return The list of single tasks.
+     * @return The list of single tasks. Tasks are added through addTask and removed through removeTask.
      */
     public List<SingleTask> getSingleTasks() {
-        return singleTasks;
+        return Collections.unmodifiableList(singleTasks);
     }
 
     /**
-     * @return The list of multiple tasks.
+     * @return The list of multiple tasks. Tasks are added through addTask and removed through removeTask.
      */
     public List<MultipleTask> getMultipleTasks() {
-        return multipleTasks;
+        return Collections.unmodifiableList(multipleTasks);
     }
 
     /**
@@ -248,15 +306,6 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
         return money;
     }
 
-    /**
-     * Generates a random delay for task scheduling.
-     *
-     * @return A random long value between 60 and 120 ticks.
-     */
-    private long getRandomDelay() {
-        return ThreadLocalRandom.current().nextLong(60, 120); // 60 to 120 ticks (3-6 seconds)
-    }
-
     /**
      * Functional interface for task creation.
      *
@@ -308,10 +357,9 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
      * @return The inventory representing the player's delivery tasks.
      */
     public Inventory getMultipleTasksInventory() {
-        List<ItemStack> items = new ArrayList<>();
-        for (MultipleTask task : this.getMultipleTasks()) {
-            items.add(task.getIcon(this.getPlayer()));
-        }
+        // Every icon of this render checks the same snapshot, and the tasks are copied since completing one removes it
+        InventorySnapshot snapshot = InventorySnapshot.of(this.getPlayer());
+        List<MultipleTask> tasks = List.copyOf(this.getMultipleTasks());
 
         InventoryFactory factory = new InventoryFactory(6, "Consegne", plugin)
                 .setClicksAllowed(false)
@@ -323,7 +371,7 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
                     task.complete((Player) e.getWhoClicked());
                 });
 
-        return new MultipleInventoryFactory(items, factory)
+        return new MultipleInventoryFactory(tasks.size(), i -> tasks.get(i).getIcon(snapshot), factory)
                 .get();
     }
 
@@ -335,10 +383,9 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
      * @return The inventory representing the player's single tasks.
      */
     public Inventory getSingleTasksInventory(){
-        List<ItemStack> items = new ArrayList<>();
-        for (SingleTask task : this.getSingleTasks()) {
-            items.add(task.getIcon(this.getPlayer()));
-        }
+        // Every icon of this render checks the same snapshot, and the tasks are copied since completing one removes it
+        InventorySnapshot snapshot = InventorySnapshot.of(this.getPlayer());
+        List<SingleTask> tasks = List.copyOf(this.getSingleTasks());
 
         InventoryFactory factory = new InventoryFactory(6, "Consegne", plugin)
                 .setClicksAllowed(false)
@@ -350,7 +397,7 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
                     task.complete((Player) e.getWhoClicked());
                 });
 
-        return new MultipleInventoryFactory(items, factory)
+        return new MultipleInventoryFactory(tasks.size(), i -> tasks.get(i).getIcon(snapshot), factory)
                 .get();
     }
 
@@ -363,33 +410,41 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
      * @return true if the provided task icon matches any of the player's tasks, false otherwise.
      */
     public boolean isPlayerTaskIcon(ItemStack task) {
-        return Stream.concat(
-                        this.getMultipleTasks().stream(),
-                        this.getSingleTasks().stream())
-                .anyMatch(taskItem -> taskItem.getIcon(this.getPlayer()).equals(task));
+        return reverse(task) != null;
     }
 
     /**
      * Reverses the task associated with the given ItemStack, determining whether it corresponds to
-     * a SingleTask or MultipleTask for the player. If the itemStack matches a task icon,
-     * the method will return the corresponding task.
+     * a SingleTask or MultipleTask for the player. If the itemStack is a task icon, the id stored in
+     * it is looked up among the player's tasks, and the method will return the corresponding task.
      *
      * @param itemStack The ItemStack to check for a matching task icon.
      * @return The task associated with the ItemStack, either a SingleTask or MultipleTask,
      *         or null if no matching task is found.
      */
+    @Nullable
     public GameTask reverse(ItemStack itemStack) {
-        if (!isPlayerTaskIcon(itemStack)) return null;
-
-        for (MultipleTask t : this.getMultipleTasks()) {
-            if (t.getIcon(this.getPlayer()).equals(itemStack)) return t;
-        }
+        UUID id = GameTask.getId(itemStack);
+        return id == null ? null : tasksById.get(id);
+    }
 
-        for (SingleTask t : this.getSingleTasks()) {
-            if (t.getIcon(this.getPlayer()).equals(itemStack)) return t;
-        }
+    /**
+     * Adds a task to the player's task list.
+     * This method checks whether the given task is a SingleTask or a MultipleTask
+     * and adds it to the corresponding task list.
+     *
+     * @param task the task to be added, either a SingleTask or a MultipleTask.
+     * @return the current instance of ServerPlayer for method chaining.
+     */
+    public ServerPlayer addTask(GameTask task) {
+        if (task instanceof SingleTask singleTask) {
+            singleTasks.add(singleTask);
+        } else if (task instanceof MultipleTask multipleTask) {
+            multipleTasks.add(multipleTask);
+        } else return this;
 
-        return null;
+        tasksById.put(task.getId(), task);
+        return this;
     }
 
     /**
@@ -406,20 +461,35 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
         } else if (task instanceof MultipleTask multipleTask) {
             multipleTasks.remove(multipleTask);
         }
+        if (task != null) tasksById.remove(task.getId(), task);
         return this;
     }
 
     /**
-     * Loads data from the database.
+     * Loads from the database the data of the players that are already online, as it happens after a reload.
+     * The data of every other player is loaded when they log in.
      * @param plugin The plugin instance.
      */
     public static void load(Plugin plugin) {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            ServerPlayer loadedPlayer = load(plugin, player.getUniqueId());
+            if (loadedPlayer != null) ServerPlayerRegistry.register(loadedPlayer);
+        }
+    }
+
+    /**
+     * Reads the data of a single player from the database. It does not register the player,
+     * and it can be called off the server thread.
+     * @param plugin The plugin instance.
+     * @param uuid The UUID of the player.
+     * @return The ServerPlayer read from the database, or null if the player has never joined.
+     */
+    @Nullable
+    public static ServerPlayer load(Plugin plugin, UUID uuid) {
         try {
-            List<ServerPlayer> loadedPlayers = DatabaseManager.load(new File("plugins/tonii-farms", "players.db"), ServerPlayer.class);
-            ServerPlayer.getPlayers().addAll(loadedPlayers);
-            System.out.println("Loaded server players");
-        } catch (SQLException | InstantiationException | IllegalAccessException | IOException e) {
-            throw new RuntimeException("Failed to load players from database", e);
+            return DatabaseManager.load(new File(plugin.getDataFolder(), "players.db"), ServerPlayer.class, uuid.toString());
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Failed to load the player " + uuid + " from database", e);
         }
     }
 
@@ -438,4 +508,15 @@ public class ServerPlayer extends DatabaseItem<ServerPlayer> {
     public void setMoney(double money) {
         this.money = money;
     }
+
+    /**
+     * @return When the tasks were last generated, in epoch milliseconds. 0 if it is unknown.
+     */
+    public long getLastTaskGeneration() {
+        return lastTaskGeneration;
+    }
+
+    public void setLastTaskGeneration(long lastTaskGeneration) {
+        this.lastTaskGeneration = lastTaskGeneration;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,191 @@
+package io.github.toniidev.toniifarmworlds.link;
+
+import io.github.toniidev.toniifarmworlds.database.WriteBehindQueue;
+import io.github.toniidev.toniifarmworlds.utils.InitializeUtils;
+import io.github.toniidev.toniifarmworlds.utils.PlayerUtils;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of all the ServerPlayers, indexed by UUID. It is split into an online tier, holding the
+ * players that are currently on the server, and an offline tier holding everybody else. Every lookup
+ * takes constant time and never goes through the Bukkit player map. Players are moved from a tier
+ * to the other when they join and when they quit.
+ * Only the players who are online, or who have just left, are kept in memory: the data of a player
+ * is read from the database while they are logging in, off the server thread, and it is dropped once
+ * it has been written back after they quit.
+ */
+public class ServerPlayerRegistry implements Listener {
+    private static final Map<UUID, ServerPlayer> online = new ConcurrentHashMap<>();
+    private static final Map<UUID, ServerPlayer> offline = new ConcurrentHashMap<>();
+
+    /// The data read while the players were logging in, waiting for them to join
+    private static final Map<UUID, Preloaded> preloaded = new ConcurrentHashMap<>();
+
+    /// The data read for a player who is logging in, and when it was read
+    private record Preloaded(ServerPlayer player, long time) {
+        private boolean isExpired() {
+            return System.currentTimeMillis() - time > PlayerUtils.LOGIN_TIMEOUT_MILLIS;
+        }
+    }
+
+    /**
+     * Adds a player to the offline tier, unless the player is already registered
+     *
+     * @param player The player to register
+     */
+    public static void register(ServerPlayer player) {
+        if (online.containsKey(player.getPlayerId())) return;
+        offline.putIfAbsent(player.getPlayerId(), player);
+    }
+
+    /**
+     * Moves a registered player to the online tier
+     *
+     * @param player The player that joined
+     */
+    public static void setOnline(ServerPlayer player) {
+        offline.remove(player.getPlayerId());
+        online.put(player.getPlayerId(), player);
+    }
+
+    /**
+     * Moves a player to the offline tier, if it is in the online one
+     *
+     * @param player The UUID of the player that quit
+     */
+    public static void setOffline(UUID player) {
+        ServerPlayer serverPlayer = online.remove(player);
+        if (serverPlayer != null) offline.put(player, serverPlayer);
+    }
+
+    /**
+     * Removes a player from both tiers
+     *
+     * @param player The UUID of the player to remove
+     */
+    public static void unregister(UUID player) {
+        online.remove(player);
+        offline.remove(player);
+    }
+
+    /**
+     * Removes a player from the offline tier, unless it has joined again meanwhile
+     *
+     * @param player The UUID of the player to drop from memory
+     */
+    public static void evict(UUID player) {
+        if (online.containsKey(player)) return;
+        offline.remove(player);
+    }
+
+    /**
+     * Takes the data that has been read while the specified player was logging in. Data read longer than
+     * the login timeout ago is thrown away, since it could be outdated
+     *
+     * @param player The UUID of the player
+     * @return The ServerPlayer read from the database, or null if there is none
+     */
+    @Nullable
+    public static ServerPlayer takePreloaded(UUID player) {
+        Preloaded entry = preloaded.remove(player);
+        return entry == null || entry.isExpired() ? null : entry.player();
+    }
+
+    /**
+     * @param player The UUID of the player
+     * @return The ServerPlayer with the specified UUID, online or not, or null if it isn't registered
+     */
+    @Nullable
+    public static ServerPlayer get(UUID player) {
+        ServerPlayer serverPlayer = online.get(player);
+        return serverPlayer != null ? serverPlayer : offline.get(player);
+    }
+
+    /**
+     * @param player The UUID of the player
+     * @return true if the player is in the online tier
+     */
+    public static boolean isOnline(UUID player) {
+        return online.containsKey(player);
+    }
+
+    /**
+     * @return The players that are currently online
+     */
+    public static Collection<ServerPlayer> getOnline() {
+        return Collections.unmodifiableCollection(online.values());
+    }
+
+    /**
+     * @return Every registered player, online or not
+     */
+    public static List<ServerPlayer> getAll() {
+        List<ServerPlayer> players = new ArrayList<>(online.size() + offline.size());
+        players.addAll(online.values());
+        players.addAll(offline.values());
+        return players;
+    }
+
+    /**
+     * Handling AsyncPlayerPreLoginEvent to read the data of the player who is logging in, off the
+     * server thread. Players who are still in memory are not read again
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent e) {
+        if (e.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+
+        // Players whose login timed out are never going to join
+        preloaded.values().removeIf(Preloaded::isExpired);
+        if (get(e.getUniqueId()) != null) return;
+
+        ServerPlayer serverPlayer = ServerPlayer.load(InitializeUtils.mainInstance, e.getUniqueId());
+        if (serverPlayer != null) preloaded.put(e.getUniqueId(), new Preloaded(serverPlayer, System.currentTimeMillis()));
+    }
+
+    /**
+     * Handling PlayerLoginEvent to forget the data read for a player who has been kicked while logging in,
+     * for example because they are banned or the server is full, since they are not going to join
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent e) {
+        if (e.getResult() == PlayerLoginEvent.Result.ALLOWED) return;
+        preloaded.remove(e.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Handling PlayerJoinEvent to move the player who joined to the online tier, before any other
+     * listener looks it up
+     */
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent e) {
+        ServerPlayer.registerPlayer(e.getPlayer(), InitializeUtils.mainInstance);
+    }
+
+    /**
+     * Handling PlayerQuitEvent to move the player who left to the offline tier, after every other
+     * listener is done with it, and to drop them from memory once their data has been written
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        UUID player = e.getPlayer().getUniqueId();
+        setOffline(player);
+
+        ServerPlayer serverPlayer = get(player);
+        WriteBehindQueue.afterWrite(serverPlayer == null ? List.of() : List.of(serverPlayer), () -> evict(player));
+    }
+}
@@ -5,6 +5,8 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 public class ServerPlayerTypeAdapter extends TypeAdapter<ServerPlayer> {
@@ -12,21 +14,15 @@ public class ServerPlayerTypeAdapter extends TypeAdapter<ServerPlayer> {
     @Override
     public void write(JsonWriter out, ServerPlayer serverPlayer) throws IOException {
         out.beginObject();
-        out.name("playerId").value(serverPlayer.getPlayer().getUniqueId().toString());
+        out.name("playerId").value(serverPlayer.getPlayerId().toString());
         out.name("displayName").value(serverPlayer.getDisplayName());
         out.name("maxSingleTasks").value(serverPlayer.getMaxSingleTasks());
         out.name("maxMultipleTasks").value(serverPlayer.getMaxMultipleTasks());
-        out.name("singleTasks").beginArray();
-        for(SingleTask task : serverPlayer.getSingleTasks()){
-            out.value(task.toString());
-        }
-        out.endArray();
-        out.name("multipleTasks").beginArray();
-        for(MultipleTask task : serverPlayer.getMultipleTasks()){
-            out.value(task.toString());
-        }
-        out.endArray();
+        List<GameTask> tasks = new ArrayList<>(serverPlayer.getSingleTasks());
+        tasks.addAll(serverPlayer.getMultipleTasks());
+        out.name("tasks").value(GameTaskCodec.encode(tasks));
         out.name("balance").value(serverPlayer.getMoney());
+        out.name("lastTaskGeneration").value(serverPlayer.getLastTaskGeneration());
         out.endObject();
     }
 
@@ -48,23 +44,35 @@ public class ServerPlayerTypeAdapter extends TypeAdapter<ServerPlayer> {
                 case "maxMultipleTasks":
                     player.setMaxMultipleTasks(Integer.parseInt(in.nextString()));
                     break;
+                case "tasks":
+                    for (GameTask task : GameTaskCodec.decode(in.nextString())) {
+                        player.addTask(task);
+                    }
+                    break;
+                // Tasks written before GameTaskCodec, in the format of GameTask#toString
                 case "singleTasks":
                     in.beginArray();
                     while(in.hasNext()){
-                        player.getSingleTasks().add((SingleTask) SingleTask.fromString(in.nextString()));
+                        player.addTask(SingleTask.fromString(in.nextString()));
                     }
                     in.endArray();
                     break;
                 case "multipleTasks":
                     in.beginArray();
                     while(in.hasNext()){
-                        player.getMultipleTasks().add((MultipleTask) MultipleTask.fromString(in.nextString()));
+                        player.addTask(MultipleTask.fromString(in.nextString()));
                     }
                     in.endArray();
                     break;
                 case "balance":
                     player.setMoney(Double.parseDouble(in.nextString()));
                     break;
+                case "lastTaskGeneration":
+                    player.setLastTaskGeneration(in.nextLong());
+                    break;
+                default:
+                    in.skipValue();
+                    break;
             }
         }
         in.endObject();
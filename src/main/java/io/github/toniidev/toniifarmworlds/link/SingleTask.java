@@ -2,11 +2,13 @@ package io.github.toniidev.toniifarmworlds.link;
 
 import io.github.toniidev.toniifarmworlds.factories.ItemStackFactory;
 import io.github.toniidev.toniifarmworlds.utils.IntegerUtils;
+import io.github.toniidev.toniifarmworlds.utils.InventorySnapshot;
 import io.github.toniidev.toniifarmworlds.utils.InventoryUtils;
 import io.github.toniidev.toniifarmworlds.utils.StringUtils;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataType;
 
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -105,6 +107,17 @@ public class SingleTask extends GameTask {
         return player.getInventory().contains(material, amount);
     }
 
+    /**
+     * Determines if the task can be completed with the contents of an inventory snapshot.
+     *
+     * @param snapshot The snapshot of the inventory of the player attempting to complete the task.
+     * @return True if the snapshot has the required materials, otherwise false.
+     */
+    @Override
+    public boolean canComplete(InventorySnapshot snapshot) {
+        return snapshot.contains(material, amount);
+    }
+
     /**
      * Completes the task, applying necessary effects or rewards to the player.
      *
@@ -125,11 +138,13 @@ public class SingleTask extends GameTask {
     /**
      * Gets the task's icon to display in the UI or inventory.
      *
-     * @param player The player viewing the task.
+     * @param snapshot The snapshot of the inventory of the player viewing the task.
      * @return An ItemStack representing the task.
      */
     @Override
-    public ItemStack getIcon(Player player) {
+    public ItemStack getIcon(InventorySnapshot snapshot) {
+        boolean canComplete = this.canComplete(snapshot);
+
         ItemStackFactory factory = new ItemStackFactory(new ItemStack(this.getMaterial(), this.getAmount()))
                 .setName(StringUtils.formatColorCodes('&', "&e" + this.getAmount() +
                         "x &a" + this.getRequestName()))
@@ -139,10 +154,11 @@ public class SingleTask extends GameTask {
                 .addBlankLoreLine()
                 .addLoreLine(StringUtils.formatColorCodes('&', "&fPrezzo: &6" + this.getReward() + "$"))
                 .addLoreLine(StringUtils.formatColorCodes('&', "&fOggetto: &6" + this.getRequestName()))
-                .addLoreLine(StringUtils.formatColorCodes('&', "&fQuantità: " + (this.canComplete(player) ? "&a" : "&c") +
+                .addLoreLine(StringUtils.formatColorCodes('&', "&fQuantità: " + (canComplete ? "&a" : "&c") +
                         this.getAmount() + "x"))
                 .addBlankLoreLine()
-                .addLoreLine(StringUtils.formatColorCodes('&', (this.canComplete(player) ? "&eClicca per accettare!" : "&cNon hai abbastanza oggetti!")));
+                .addLoreLine(StringUtils.formatColorCodes('&', (canComplete ? "&eClicca per accettare!" : "&cNon hai abbastanza oggetti!")))
+                .setPersistentData(getIdKey(), PersistentDataType.STRING, this.getId().toString());
 
         return factory.get();
     }
@@ -0,0 +1,182 @@
+package io.github.toniidev.toniifarmworlds.link;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates the tasks of the online players from a single timer. Every online player has a deadline
+ * for the next SingleTask and one for the next MultipleTask, kept in a queue ordered by tick. Every tick
+ * only the deadlines that are due get processed, at most a fixed amount of them, so the cost of the
+ * timer depends on the generations that are due and not on the number of players. Offline players
+ * have no deadlines at all: when they join, the tasks they would have got meanwhile are generated at once.
+ * Every generation records its time in the player, so that only the time since the last one counts
+ * as missed, even if the server stops without saving it on quit.
+ */
+public class TaskScheduler implements Listener {
+    /// The average delay between two generation attempts of the same kind, used to catch up offline players
+    static final long AVERAGE_DELAY_MILLIS = 90L * 50L;
+
+    /// The type of task a deadline generates
+    private enum Kind {
+        SINGLE,
+        MULTIPLE
+    }
+
+    /// The tick at which a player gets a generation attempt of the specified kind
+    private static final class Deadline {
+        private final long tick;
+        private final ServerPlayer player;
+        private final Kind kind;
+        /// Deadlines of players who left are not removed from the queue, they are just skipped
+        private boolean cancelled;
+
+        private Deadline(long tick, ServerPlayer player, Kind kind) {
+            this.tick = tick;
+            this.player = player;
+            this.kind = kind;
+        }
+    }
+
+    private static final PriorityQueue<Deadline> queue = new PriorityQueue<>(Comparator.comparingLong(x -> x.tick));
+
+    /// The pending deadlines of every scheduled player, by UUID
+    private static final Map<UUID, EnumMap<Kind, Deadline>> scheduled = new HashMap<>();
+
+    private static Plugin plugin;
+    private static int maxGenerationsPerTick;
+    private static long currentTick;
+
+    /**
+     * Reads the "tasks" section of the config, schedules the players that are already online
+     * and starts the timer
+     *
+     * @param main The main plugin instance
+     */
+    public static void start(Plugin main) {
+        plugin = main;
+        maxGenerationsPerTick = Math.max(1, main.getConfig().getInt("tasks.max-generations-per-tick", 20));
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            schedule(ServerPlayer.registerPlayer(player, main));
+        }
+
+        Bukkit.getScheduler().runTaskTimer(main, TaskScheduler::tick, 1L, 1L);
+    }
+
+    /**
+     * Starts generating the tasks of a player, after generating the ones they missed since the last
+     * generation. If the player is already scheduled, nothing changes
+     *
+     * @param player The player to generate the tasks of
+     */
+    public static void schedule(ServerPlayer player) {
+        if (scheduled.containsKey(player.getPlayerId())) return;
+
+        player.catchUpTasks(System.currentTimeMillis());
+
+        EnumMap<Kind, Deadline> deadlines = new EnumMap<>(Kind.class);
+        scheduled.put(player.getPlayerId(), deadlines);
+        for (Kind kind : Kind.values()) {
+            push(player, kind, deadlines);
+        }
+    }
+
+    /**
+     * Stops generating the tasks of a player, and saves when that happened, so that the tasks
+     * they miss while offline can be generated when they join again
+     *
+     * @param player The UUID of the player
+     */
+    public static void cancel(UUID player) {
+        EnumMap<Kind, Deadline> deadlines = scheduled.remove(player);
+        if (deadlines == null) return;
+
+        ServerPlayer serverPlayer = null;
+        for (Deadline deadline : deadlines.values()) {
+            deadline.cancelled = true;
+            serverPlayer = deadline.player;
+        }
+
+        if (serverPlayer != null) {
+            serverPlayer.setLastTaskGeneration(System.currentTimeMillis());
+            serverPlayer.save();
+        }
+    }
+
+    /**
+     * Stops generating the tasks of every player. It must be called when the plugin disables
+     */
+    public static void stop() {
+        for (UUID player : new ArrayList<>(scheduled.keySet())) {
+            cancel(player);
+        }
+    }
+
+    /**
+     * @return The number of players whose tasks are being generated
+     */
+    public static int getScheduledCount() {
+        return scheduled.size();
+    }
+
+    // Process the due deadlines, at most maxGenerationsPerTick of them. The others stay due for the next ticks
+    private static void tick() {
+        currentTick++;
+
+        int processed = 0;
+        while (processed < maxGenerationsPerTick && !queue.isEmpty() && queue.peek().tick <= currentTick) {
+            Deadline deadline = queue.poll();
+            if (deadline.cancelled) continue;
+
+            switch (deadline.kind) {
+                case SINGLE -> deadline.player.generateSingleTask();
+                case MULTIPLE -> deadline.player.generateMultipleTask();
+            }
+            // Goes to the database with the next save of the player, so a crash doesn't count the session as offline time
+            deadline.player.setLastTaskGeneration(System.currentTimeMillis());
+            processed++;
+
+            push(deadline.player, deadline.kind, scheduled.get(deadline.player.getPlayerId()));
+        }
+    }
+
+    // Queue the next deadline of the specified kind for a player
+    private static void push(ServerPlayer player, Kind kind, EnumMap<Kind, Deadline> deadlines) {
+        Deadline deadline = new Deadline(currentTick + getRandomDelay(), player, kind);
+        deadlines.put(kind, deadline);
+        queue.add(deadline);
+    }
+
+    /**
+     * Generates a random delay for task scheduling.
+     *
+     * @return A random long value between 60 and 120 ticks.
+     */
+    private static long getRandomDelay() {
+        return ThreadLocalRandom.current().nextLong(60, 120); // 60 to 120 ticks (3-6 seconds)
+    }
+
+    /**
+     * Handling PlayerJoinEvent to start generating the tasks of the player who joined
+     */
+    @EventHandler
+    public void onJoin(PlayerJoinEvent e) {
+        schedule(ServerPlayer.registerPlayer(e.getPlayer(), plugin));
+    }
+
+    /**
+     * Handling PlayerQuitEvent to stop generating the tasks of the player who left
+     */
+    @EventHandler
+    public void onQuit(PlayerQuitEvent e) {
+        cancel(e.getPlayer().getUniqueId());
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.toniidev.toniifarmworlds.utils;
+
+/**
+ * How the region files of a world are cloned. Any other file is always copied.
+ */
+public enum CloneMode {
+    /// Region files are copied byte by byte
+    COPY,
+    /// Region files are cloned with a copy-on-write reflink (btrfs, XFS, ...). Falls back to a copy
+    REFLINK;
+
+    /**
+     * Gets the mode with the specified name, ignoring its case
+     *
+     * @param name The name of the mode
+     * @return The mode with that name, or COPY if there is none
+     */
+    public static CloneMode fromString(String name) {
+        for (CloneMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name)) return mode;
+        }
+        return COPY;
+    }
+}
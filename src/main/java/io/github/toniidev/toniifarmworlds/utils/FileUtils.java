@@ -1,8 +1,31 @@
 package io.github.toniidev.toniifarmworlds.utils;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class FileUtils {
+    /// Threads used to copy files off the server thread. They are daemon threads, so they never block a shutdown
+    private static final ExecutorService copyExecutor = Executors.newFixedThreadPool(
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())), runnable -> {
+                Thread thread = new Thread(runnable, "tonii-farmworlds-copy");
+                thread.setDaemon(true);
+                return thread;
+            });
+
     public static void copyFolder(File source, File target) throws Exception{
         if (source.isDirectory()) {
             if (!target.exists() && !target.mkdirs()) {
@@ -18,4 +41,133 @@ public class FileUtils {
             java.nio.file.Files.copy(source.toPath(), target.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
         }
     }
+
+    /// Whether cp has already failed to reflink a file on this system, so that it doesn't get spawned again for nothing
+    private static volatile boolean reflinkUnsupported = false;
+
+    /**
+     * Copies a folder off the server thread. The folder tree is walked once: directories and small
+     * files are copied by the walk itself, while region files (.mca), which are the bulk of a world,
+     * are copied in parallel.
+     *
+     * @param source       The folder to copy
+     * @param target       The folder to copy to
+     * @param excludedFiles The names of the files that must not be copied, like lock files
+     * @return A future that completes when every file has been copied
+     */
+    public static CompletableFuture<Void> copyFolderAsync(Path source, Path target, Set<String> excludedFiles) {
+        return copyFolderAsync(source, target, excludedFiles, CloneMode.COPY);
+    }
+
+    /**
+     * Copies a folder off the server thread, like copyFolderAsync(Path, Path, Set), but cloning the region
+     * files (.mca) in the specified mode. If a region file can't be cloned in that mode, it gets copied.
+     *
+     * @param source       The folder to copy
+     * @param target       The folder to copy to
+     * @param excludedFiles The names of the files that must not be copied, like lock files
+     * @param mode         How the region files have to be cloned
+     * @return A future that completes when every file has been copied
+     */
+    public static CompletableFuture<Void> copyFolderAsync(Path source, Path target, Set<String> excludedFiles, CloneMode mode) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<CompletableFuture<Void>> copies = new ArrayList<>();
+            try {
+                Files.walkFileTree(source, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                        Files.createDirectories(target.resolve(source.relativize(dir)));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        String name = file.getFileName().toString();
+                        if (excludedFiles.contains(name)) return FileVisitResult.CONTINUE;
+
+                        Path destination = target.resolve(source.relativize(file));
+                        if (name.endsWith(".mca")) {
+                            copies.add(CompletableFuture.runAsync(() -> cloneFile(file, destination, mode), copyExecutor));
+                        } else {
+                            Files.copy(file, destination, StandardCopyOption.REPLACE_EXISTING);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return copies;
+        }, copyExecutor).thenCompose(copies -> CompletableFuture.allOf(copies.toArray(new CompletableFuture[0])));
+    }
+
+    /**
+     * Deletes a folder and everything inside it, ignoring the files that can't be deleted
+     *
+     * @param folder The folder to delete
+     */
+    public static void deleteFolder(Path folder) {
+        if (!Files.exists(folder)) return;
+        try {
+            Files.walkFileTree(folder, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.deleteIfExists(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    Files.deleteIfExists(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Gets how many hard links the specified file has
+     *
+     * @param file The file to check
+     * @return The amount of links to the file, or 1 if the file system can't tell
+     */
+    public static int getLinkCount(Path file) throws IOException {
+        if (!supportsLinkCount()) return 1;
+        return (int) Files.getAttribute(file, "unix:nlink");
+    }
+
+    /**
+     * @return true if the file system can tell how many hard links a file has
+     */
+    public static boolean supportsLinkCount() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+    }
+
+    private static void cloneFile(Path source, Path target, CloneMode mode) {
+        if (mode == CloneMode.REFLINK && !reflinkUnsupported) {
+            try {
+                Process process = new ProcessBuilder("cp", "--reflink=always", source.toString(), target.toString())
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                if (process.waitFor() == 0) return;
+            } catch (IOException e) {
+                // No cp on this system
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reflinkUnsupported = true;
+        }
+
+        copyFile(source, target);
+    }
+
+    private static void copyFile(Path source, Path target) {
+        try {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,68 @@
+package io.github.toniidev.toniifarmworlds.utils;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * The amount of every Material an Inventory contains, counted in a single pass over its contents.
+ * It should be taken once when a menu gets rendered, and then used for every check of that render,
+ * instead of scanning the whole Inventory for every check. It does not follow later changes of the Inventory.
+ */
+public class InventorySnapshot {
+    /// Material.values() creates a new array at every call, so its length is read once
+    private static final int MATERIALS = Material.values().length;
+
+    /// The amount of every Material, indexed by Material ordinal
+    private final int[] counts = new int[MATERIALS];
+
+    /**
+     * Counts the materials in the storage contents of an Inventory. Like Inventory#contains,
+     * it does not count armor and offhand slots
+     *
+     * @param inventory The Inventory to count the materials of
+     */
+    public InventorySnapshot(Inventory inventory) {
+        if (inventory == null) {
+            throw new IllegalArgumentException("Inventory cannot be null");
+        }
+
+        for (ItemStack itemStack : inventory.getStorageContents()) {
+            if (itemStack == null) continue;
+            counts[itemStack.getType().ordinal()] += itemStack.getAmount();
+        }
+    }
+
+    /**
+     * Counts the materials in the inventory of a Player
+     *
+     * @param player The Player whose inventory must be counted
+     * @return The snapshot of the Player's inventory
+     */
+    public static InventorySnapshot of(Player player) {
+        if (player == null) {
+            throw new IllegalArgumentException("Player cannot be null");
+        }
+        return new InventorySnapshot(player.getInventory());
+    }
+
+    /**
+     * @param material The Material to count
+     * @return The amount of the specified Material the Inventory contained
+     */
+    public int count(Material material) {
+        return counts[material.ordinal()];
+    }
+
+    /**
+     * Tells whether the Inventory contained at least the specified amount of a Material
+     *
+     * @param material The Material to check
+     * @param amount   The minimum amount
+     * @return true if the Inventory contained at least that amount of the Material
+     */
+    public boolean contains(Material material, int amount) {
+        return count(material) >= amount;
+    }
+}
@@ -5,8 +5,11 @@ import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 
+import javax.annotation.Nullable;
+
 public class InventoryUtils {
     /**
      * Creates a new Inventory instance having the same exact properties of the
@@ -19,11 +22,21 @@ public class InventoryUtils {
      * (except title, that can be the same, but it has to be specified)
      */
     public static Inventory cloneInventory(Inventory inventory, String title) {
-        Inventory newInventoryInstance = Bukkit.createInventory(null, inventory.getSize(), title);
+        return cloneInventory(inventory, title, null);
+    }
 
-        for (int i = 0; i < inventory.getSize(); i++) {
-            newInventoryInstance.setItem(i, inventory.getItem(i));
-        }
+    /**
+     * Creates a new Inventory instance having the same exact properties of the
+     * specified inventory, owned by the specified holder
+     *
+     * @param inventory The Inventory that must be cloned
+     * @param title     The title of the new Inventory
+     * @param holder    The holder of the new Inventory, or null if it has no holder
+     * @return A new Inventory instance having the same contents of the chosen Inventory
+     */
+    public static Inventory cloneInventory(Inventory inventory, String title, @Nullable InventoryHolder holder) {
+        Inventory newInventoryInstance = Bukkit.createInventory(holder, inventory.getSize(), title);
+        newInventoryInstance.setContents(inventory.getContents());
 
         return newInventoryInstance;
     }
@@ -6,6 +6,10 @@ import org.bukkit.entity.Player;
 import java.util.UUID;
 
 public class PlayerUtils {
+    /// How long the data read while a player was logging in is kept waiting for them to join. Logins that
+    /// take longer than this are timed out by the server anyway
+    public static final long LOGIN_TIMEOUT_MILLIS = 30_000L;
+
     public static Player getPlayer(UUID uuid){
         if(Bukkit.getPlayer(uuid) != null) return Bukkit.getPlayer(uuid);
         return Bukkit.getOfflinePlayer(uuid).getPlayer();
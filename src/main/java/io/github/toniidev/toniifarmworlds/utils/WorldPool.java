@@ -0,0 +1,206 @@
+package io.github.toniidev.toniifarmworlds.utils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Pool of ready-made clones of the template world. Clones are copied in the background and kept
+ * on disk next to the worlds, so that creating a farm world only takes a directory rename.
+ * Every clone has a marker file next to it, which is written only once the copy is complete and
+ * which remembers the version of the template it was copied from: incomplete clones are thrown away
+ * when the pool starts, and clones of an outdated template both when the pool starts and when they
+ * would be handed out. The version of the template is the "world-pool.template-version" setting of
+ * the config, which must be changed whenever the template gets edited.
+ */
+public class WorldPool {
+    /// A complete clone, with the version of the template it was copied from
+    private record Clone(File folder, String version) {
+    }
+
+    /// The clones that are complete and can be handed out
+    private static final Deque<Clone> ready = new ConcurrentLinkedDeque<>();
+    /// The amount of clones that are being copied right now
+    private static final AtomicInteger refilling = new AtomicInteger();
+
+    private static Plugin plugin;
+    private static File poolFolder;
+    private static String templateWorldName;
+    private static int size;
+
+    /**
+     * Reads the "world-pool" section of the config, picks up the clones left by the previous run
+     * and starts refilling the pool
+     *
+     * @param main The main plugin instance
+     */
+    public static void start(Plugin main) {
+        plugin = main;
+        templateWorldName = main.getConfig().getString("world-pool.template", "template");
+        size = main.getConfig().getInt("world-pool.size", 2);
+        long interval = Math.max(1L, main.getConfig().getLong("world-pool.refill-interval-ticks", 600L));
+        poolFolder = new File(Bukkit.getWorldContainer(), ".tonii-farm-pool");
+
+        if (size <= 0) return;
+
+        CompletableFuture.runAsync(WorldPool::scan)
+                .whenComplete((ignored, ex) -> {
+                    if (ex != null) plugin.getLogger().log(Level.WARNING, "Failed to read the world pool", ex);
+                    Bukkit.getScheduler().runTaskTimer(main, WorldPool::refill, 1L, interval);
+                });
+    }
+
+    /**
+     * Creates the folder of a new world as a clone of the specified template. If the pool has a ready
+     * clone of that template, the clone is just renamed into the new world folder and the pool gets
+     * refilled in the background. Otherwise, the template is copied.
+     *
+     * @param sourceWorldName The name of the template world
+     * @param targetWorldName The name of the new world
+     * @return A future that completes when the world folder is ready to be loaded
+     */
+    public static CompletableFuture<Void> take(String sourceWorldName, String targetWorldName) {
+        File target = new File(Bukkit.getWorldContainer(), targetWorldName);
+
+        if (sourceWorldName.equals(templateWorldName) && !target.exists()) {
+            Clone readyClone;
+            while ((readyClone = ready.poll()) != null) {
+                File clone = readyClone.folder();
+                if (!readyClone.version().equals(getTemplateVersion())) {
+                    discard(clone);
+                    continue;
+                }
+
+                try {
+                    Files.move(clone.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    Files.deleteIfExists(getMarker(clone).toPath());
+                    return CompletableFuture.completedFuture(null);
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to take " + clone.getName() + " from the world pool", e);
+                }
+            }
+        }
+
+        return WorldUtils.cloneWorldAsync(sourceWorldName, target);
+    }
+
+    /**
+     * Gets the name of the template world, from the "world-pool.template" setting of the config.
+     * New farms must be cloned from it, or they can't be handed a ready clone
+     *
+     * @return The name of the world new farms are cloned from
+     */
+    public static String getTemplateWorldName() {
+        return templateWorldName;
+    }
+
+    /**
+     * @return The amount of clones that are ready to be handed out
+     */
+    public static int getReadyCount() {
+        return ready.size();
+    }
+
+    /**
+     * Starts copying a new clone, if the pool isn't full. At most one clone is started per call,
+     * so the refill rate is bounded by the refill interval.
+     */
+    private static void refill() {
+        if (ready.size() + refilling.get() >= size) return;
+
+        refilling.incrementAndGet();
+        File clone = new File(poolFolder, "clone-" + UUID.randomUUID());
+        String version = getTemplateVersion();
+
+        WorldUtils.cloneWorldAsync(templateWorldName, clone)
+                .thenRun(() -> {
+                    try {
+                        Files.writeString(getMarker(clone).toPath(), version);
+                    } catch (IOException e) {
+                        FileUtils.deleteFolder(clone.toPath());
+                        throw new RuntimeException(e);
+                    }
+                    ready.add(new Clone(clone, version));
+                })
+                .whenComplete((ignored, ex) -> {
+                    refilling.decrementAndGet();
+                    if (ex != null) plugin.getLogger().log(Level.WARNING, "Failed to refill the world pool", ex);
+                });
+    }
+
+    /**
+     * Picks up the complete clones of the current template and deletes everything else in the pool folder.
+     * Clones whose region files are hard-linked, which older versions used to make, are deleted too: loading
+     * one of them would write to the template
+     */
+    private static void scan() {
+        File[] children = poolFolder.listFiles();
+        if (children == null) return;
+
+        String version = getTemplateVersion();
+        for (File child : children) {
+            if (!child.isDirectory()) {
+                // Markers are handled together with their clone, the rest is garbage
+                if (!child.getName().endsWith(".ready")) child.delete();
+                continue;
+            }
+
+            File marker = getMarker(child);
+            try {
+                if (marker.exists() && Files.readString(marker.toPath()).equals(version)
+                        && WorldUtils.countRegionLinks(child) == 0) {
+                    ready.add(new Clone(child, version));
+                    continue;
+                }
+            } catch (IOException ignored) {
+            }
+
+            FileUtils.deleteFolder(child.toPath());
+            marker.delete();
+        }
+
+        // Markers whose clone is gone
+        File[] markers = poolFolder.listFiles((dir, name) -> name.endsWith(".ready"));
+        if (markers == null) return;
+        for (File marker : markers) {
+            File clone = new File(poolFolder, marker.getName().substring(0, marker.getName().length() - ".ready".length()));
+            if (!clone.exists()) marker.delete();
+        }
+    }
+
+    /**
+     * Deletes a clone of an outdated template, off the server thread
+     *
+     * @param clone The folder of the clone
+     */
+    private static void discard(File clone) {
+        CompletableFuture.runAsync(() -> {
+            getMarker(clone).delete();
+            FileUtils.deleteFolder(clone.toPath());
+        });
+    }
+
+    private static File getMarker(File clone) {
+        return new File(clone.getParentFile(), clone.getName() + ".ready");
+    }
+
+    /**
+     * Gets the version of the template from the config. The files of the template can't tell it: if the
+     * template world is loaded, the server saves them over and over even when nobody edits it
+     *
+     * @return The version of the template world, which changes only when it is set to a new value
+     */
+    private static String getTemplateVersion() {
+        return plugin.getConfig().getString("world-pool.template-version", "1");
+    }
+}
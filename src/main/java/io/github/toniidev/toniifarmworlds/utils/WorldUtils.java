@@ -3,8 +3,19 @@ package io.github.toniidev.toniifarmworlds.utils;
 import org.bukkit.Bukkit;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class WorldUtils {
+    /// Files that belong to a single running world and must never be copied into another one
+    private static final Set<String> EXCLUDED_FILES = Set.of("session.lock", "uid.dat");
+
     public static void cloneWorld(String sourceWorldName, String targetWorldName) throws Exception {
         File sourceFolder = new File(Bukkit.getWorldContainer(), sourceWorldName);
         File targetFolder = new File(Bukkit.getWorldContainer(), targetWorldName);
@@ -15,4 +26,85 @@ public class WorldUtils {
 
         FileUtils.copyFolder(sourceFolder, targetFolder);
     }
+
+    /**
+     * Copies the folder of a world into the folder of a new world, off the server thread.
+     * Lock files and the world UID are not copied. The new world is not loaded: it must be loaded
+     * on the server thread once the returned future completes.
+     *
+     * @param sourceWorldName The name of the world to clone
+     * @param targetWorldName The name of the new world
+     * @return A future that completes when the world folder has been copied
+     */
+    public static CompletableFuture<Void> cloneWorldAsync(String sourceWorldName, String targetWorldName) {
+        return cloneWorldAsync(sourceWorldName, new File(Bukkit.getWorldContainer(), targetWorldName));
+    }
+
+    /**
+     * Copies the folder of a world into the specified folder, off the server thread.
+     * Lock files and the world UID are not copied. Region files are cloned in the mode set
+     * in the config, under "world-cloning.mode".
+     *
+     * @param sourceWorldName The name of the world to clone
+     * @param targetFolder    The folder to copy the world to
+     * @return A future that completes when the world folder has been copied
+     */
+    public static CompletableFuture<Void> cloneWorldAsync(String sourceWorldName, File targetFolder) {
+        return cloneWorldAsync(sourceWorldName, targetFolder, getCloneMode());
+    }
+
+    /**
+     * Copies the folder of a world into the specified folder, off the server thread, cloning
+     * the region files in the specified mode. Lock files and the world UID are not copied.
+     *
+     * @param sourceWorldName The name of the world to clone
+     * @param targetFolder    The folder to copy the world to
+     * @param mode            How the region files have to be cloned
+     * @return A future that completes when the world folder has been copied
+     */
+    public static CompletableFuture<Void> cloneWorldAsync(String sourceWorldName, File targetFolder, CloneMode mode) {
+        File sourceFolder = new File(Bukkit.getWorldContainer(), sourceWorldName);
+
+        if (!sourceFolder.exists()) {
+            return CompletableFuture.failedFuture(
+                    new Exception("Il mondo template " + sourceWorldName + " non esiste!"));
+        }
+
+        // A half-copied world must not be left behind, or it would be loaded as if it were complete
+        return FileUtils.copyFolderAsync(sourceFolder.toPath(), targetFolder.toPath(), EXCLUDED_FILES, mode)
+                .whenComplete((ignored, ex) -> {
+                    if (ex != null) FileUtils.deleteFolder(targetFolder.toPath());
+                });
+    }
+
+    /**
+     * Gets the mode region files are cloned in, from the "world-cloning.mode" setting of the config
+     *
+     * @return The clone mode, COPY by default
+     */
+    public static CloneMode getCloneMode() {
+        if (InitializeUtils.mainInstance == null) return CloneMode.COPY;
+        return CloneMode.fromString(InitializeUtils.mainInstance.getConfig().getString("world-cloning.mode", "copy"));
+    }
+
+    /**
+     * Counts the region files of a world that are hard-linked to another file, without touching them.
+     * Minecraft writes region files in place, so the changes made to such a world would show up in the other one
+     *
+     * @param worldFolder The folder of the world
+     * @return The amount of region files that share their data with another world
+     */
+    public static int countRegionLinks(File worldFolder) throws IOException {
+        if (!FileUtils.supportsLinkCount() || !worldFolder.exists()) return 0;
+
+        int[] linked = {0};
+        Files.walkFileTree(worldFolder.toPath(), new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (file.getFileName().toString().endsWith(".mca") && FileUtils.getLinkCount(file) > 1) linked[0]++;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return linked[0];
+    }
 }
@@ -0,0 +1,184 @@
+package io.github.toniidev.toniifarmworlds.link;
+
+import org.bukkit.Material;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameTaskCodecTest {
+    @Test
+    void encodesSingleTask() {
+        SingleTask task = new SingleTask(Material.WHEAT, "Grano", 3, 120, "Contadino");
+
+        List<GameTask> decoded = GameTaskCodec.decode(GameTaskCodec.encode(List.of(task)));
+
+        assertEquals(1, decoded.size());
+        assertSameTask(task, decoded.get(0));
+    }
+
+    @Test
+    void encodesMultipleTask() {
+        MultipleTask task = new MultipleTask(List.of(
+                new SingleTask(Material.WHEAT, "Grano", 3, 120, "Mugnaio"),
+                new SingleTask(Material.CARROT, "Carote", 2, 80, "Mugnaio")), "Mugnaio");
+
+        List<GameTask> decoded = GameTaskCodec.decode(GameTaskCodec.encode(List.of(task)));
+
+        assertEquals(1, decoded.size());
+        assertSameTask(task, decoded.get(0));
+    }
+
+    @Test
+    void keepsTheOrderOfMixedTasks() {
+        List<GameTask> tasks = List.of(
+                new SingleTask(Material.POTATO, "Patate", 4, 200, "Cuoco"),
+                new MultipleTask(List.of(new SingleTask(Material.BEETROOT, "Barbabietole", 1, 40, "Oste")), "Oste"),
+                new SingleTask(Material.PUMPKIN_PIE, "Torta di zucca", 1, 60, "Cuoco"));
+
+        List<GameTask> decoded = GameTaskCodec.decode(GameTaskCodec.encode(tasks));
+
+        assertEquals(tasks.size(), decoded.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            assertSameTask(tasks.get(i), decoded.get(i));
+        }
+    }
+
+    @Test
+    void keepsTheDelimitersOfTheStringFormatInNames() {
+        String requestName = "Grano @ scorta, #1; ora: subito";
+        String clientName = "Mastro @,#;: Geppetto";
+        List<GameTask> tasks = List.of(
+                new SingleTask(Material.WHEAT, requestName, 3, 120, clientName),
+                new MultipleTask(List.of(new SingleTask(Material.CARROT, requestName, 2, 80, clientName)), clientName));
+
+        List<GameTask> decoded = GameTaskCodec.decode(GameTaskCodec.encode(tasks));
+
+        assertSameTask(tasks.get(0), decoded.get(0));
+        assertSameTask(tasks.get(1), decoded.get(1));
+    }
+
+    @Test
+    void writesEachStringOnce() {
+        List<GameTask> tasks = List.of(
+                new SingleTask(Material.WHEAT, "Grano", 3, 120, "Contadino"),
+                new SingleTask(Material.WHEAT, "Grano", 1, 40, "Contadino"),
+                new MultipleTask(List.of(new SingleTask(Material.WHEAT, "Grano", 2, 80, "Contadino")), "Contadino"));
+
+        byte[] data = Base64.getDecoder().decode(GameTaskCodec.encode(tasks));
+
+        // The version, then the size of the string table: the material key, the request and the client
+        assertEquals(1, data[0]);
+        assertEquals(3, data[1]);
+        assertEquals(3, GameTaskCodec.decode(GameTaskCodec.encode(tasks)).size());
+    }
+
+    @Test
+    void encodesEmptyLists() {
+        String data = GameTaskCodec.encode(List.of());
+
+        assertArrayEquals(new byte[]{1, 0, 0}, Base64.getDecoder().decode(data));
+        assertTrue(GameTaskCodec.decode(data).isEmpty());
+
+        MultipleTask empty = new MultipleTask(new ArrayList<>(), "Nessuno");
+        List<GameTask> decoded = GameTaskCodec.decode(GameTaskCodec.encode(List.of(empty)));
+        assertSameTask(empty, decoded.get(0));
+    }
+
+    @Test
+    void refusesNewerVersions() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> GameTaskCodec.decode(encode(2, 0, 0)));
+        assertTrue(e.getMessage().contains("2"));
+    }
+
+    @Test
+    void refusesMissingVersion() {
+        assertThrows(IllegalArgumentException.class, () -> GameTaskCodec.decode(encode(0, 0, 0)));
+    }
+
+    @Test
+    void refusesMalformedVarints() {
+        // More than ten bytes
+        assertMalformed(encode(0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x01));
+        // A valid varint that doesn't fit an int
+        assertMalformed(encode(0xFF, 0xFF, 0xFF, 0xFF, 0x7F));
+        // Cut before its last byte
+        assertMalformed(encode(0x80));
+    }
+
+    @Test
+    void refusesCorruptedData() {
+        // A string table larger than the data
+        assertMalformed(encode(1, 100));
+        // A task referring to a string that isn't in the table
+        assertMalformed(encode(1, 0, 1, 0, 5, 1, 5, 1, 5));
+        // The data ends in the middle of a task
+        assertMalformed(encode(1, 0, 1, 0));
+    }
+
+    @Test
+    void refusesUnknownTypesAndMaterials() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> GameTaskCodec.decode(encode(1, 0, 1, 7)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(new byte[]{1, 3});
+            out.writeUTF("minecraft:not_a_material");
+            out.writeUTF("Niente");
+            out.writeUTF("Nessuno");
+            out.write(new byte[]{1, 0, 0, 1, 1, 1, 2});
+        }
+        String data = Base64.getEncoder().encodeToString(bytes.toByteArray());
+        assertThrows(IllegalArgumentException.class, () -> GameTaskCodec.decode(data));
+    }
+
+    @Test
+    void refusesNull() {
+        assertThrows(IllegalArgumentException.class, () -> GameTaskCodec.encode(null));
+        assertThrows(IllegalArgumentException.class, () -> GameTaskCodec.decode(null));
+    }
+
+    private static void assertSameTask(GameTask expected, GameTask actual) {
+        if (expected instanceof MultipleTask multipleTask) {
+            MultipleTask decoded = assertInstanceOf(MultipleTask.class, actual);
+            assertEquals(multipleTask.getClient(), decoded.getClient());
+            assertEquals(multipleTask.getTasks().size(), decoded.getTasks().size());
+            for (int i = 0; i < multipleTask.getTasks().size(); i++) {
+                assertSameTask(multipleTask.getTasks().get(i), decoded.getTasks().get(i));
+            }
+            return;
+        }
+
+        SingleTask singleTask = (SingleTask) expected;
+        SingleTask decoded = assertInstanceOf(SingleTask.class, actual);
+        assertEquals(singleTask.getMaterial(), decoded.getMaterial());
+        assertEquals(singleTask.getRequestName(), decoded.getRequestName());
+        assertEquals(singleTask.getAmount(), decoded.getAmount());
+        assertEquals(singleTask.getReward(), decoded.getReward());
+        assertEquals(singleTask.getClientName(), decoded.getClientName());
+    }
+
+    private static void assertMalformed(String data) {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> GameTaskCodec.decode(data));
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    private static String encode(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}